@@ -0,0 +1,99 @@
+package org.mangorage.mangobotlaunch.benchmark;
+
+import org.mangorage.bootstrap.api.dependency.IDependency;
+import org.mangorage.mangobotlaunch.util.handler.DependencyHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link DependencyHandler#scanPackages(Path, Path, int)} over plugin jars sharing a pool of libraries,
+ * with and without the module name cache from a previous scan.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DependencyHandlerBenchmark {
+    private static final int PLUGINS = 8;
+
+    @Param({"20", "200"})
+    public int libraries;
+
+    @Param({"1", "4"})
+    public int parallelism;
+
+    @Param({"false", "true"})
+    public boolean warmCache;
+
+    private Path directory;
+    private Path packages;
+    private Path librariesPath;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("dependency-bench");
+        packages = Files.createDirectories(directory.resolve("packages"));
+        librariesPath = Files.createDirectories(directory.resolve("libraries"));
+
+        final var kinds = SyntheticJars.Kind.values();
+        for (int i = 0; i < libraries; i++) {
+            SyntheticJars.writeJar(librariesPath, "bench.library" + i, kinds[i % kinds.length], 4, 25);
+        }
+
+        final List<Path> jars;
+        try (var files = Files.list(librariesPath)) {
+            jars = files.sorted().toList();
+        }
+
+        // Every plugin lists half of the libraries, so most are shared between plugins
+        for (int plugin = 0; plugin < PLUGINS; plugin++) {
+            final var json = new StringBuilder("{\"dependencies\":[");
+            for (int i = 0; i < jars.size(); i++) {
+                if ((i + plugin) % 2 != 0) continue;
+                if (json.charAt(json.length() - 1) == '}') json.append(',');
+                json.append("{\"url\":\"\",\"group\":\"bench\",\"artifact\":\"library").append(i)
+                        .append("\",\"version\":\"1.0.0\",\"target\":\"\",\"output\":\"")
+                        .append(jars.get(i).getFileName()).append("\"}");
+            }
+            json.append("]}");
+            SyntheticJars.writeJar(packages.resolve("plugin" + plugin + ".jar"),
+                    Map.of("installer-data/dependencies.json", json.toString().getBytes(StandardCharsets.UTF_8)));
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void prepareCache() throws IOException {
+        if (!warmCache) SyntheticJars.deleteRecursively(librariesPath.resolve(".cache"));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        SyntheticJars.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public List<IDependency> scanPackages() throws IOException {
+        return DependencyHandler.scanPackages(packages, librariesPath, parallelism);
+    }
+}
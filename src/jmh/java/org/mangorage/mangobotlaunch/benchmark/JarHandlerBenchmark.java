@@ -0,0 +1,69 @@
+package org.mangorage.mangobotlaunch.benchmark;
+
+import org.mangorage.mangobotlaunch.util.Result;
+import org.mangorage.mangobotlaunch.util.handler.JarHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-pass {@link JarHandler#resolveModuleName(Path)} against the original ModuleFinder based resolution.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JarHandlerBenchmark {
+
+    @Param({"100", "5000"})
+    public int classes;
+
+    @Param({"MODULE_INFO", "MULTI_RELEASE", "AUTOMATIC_MODULE_NAME", "BUNDLE_SYMBOLIC_NAME", "UNNAMED"})
+    public SyntheticJars.Kind kind;
+
+    private Path directory;
+    private Path jar;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("jarhandler-bench");
+        jar = SyntheticJars.writeJar(directory, "bench.library", kind, Math.max(1, classes / 50), Math.min(classes, 50));
+
+        final var expected = LegacyJarHandler.resolveModuleName(jar);
+        final var actual = JarHandler.resolveModuleName(jar);
+        if (!expected.equals(actual))
+            throw new IllegalStateException("Resolution differs, legacy " + expected + " single pass " + actual);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        SyntheticJars.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public Result singlePass() {
+        return JarHandler.resolveModuleName(jar);
+    }
+
+    @Benchmark
+    public Result legacy() {
+        return LegacyJarHandler.resolveModuleName(jar);
+    }
+}
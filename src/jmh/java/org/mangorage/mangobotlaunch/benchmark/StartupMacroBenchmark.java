@@ -0,0 +1,279 @@
+package org.mangorage.mangobotlaunch.benchmark;
+
+import org.mangorage.bootstrap.api.launch.ILaunchTarget;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryType;
+import java.lang.module.FindException;
+import java.lang.module.ModuleFinder;
+import java.lang.module.ModuleReference;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.ServiceLoader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Boots the launch target over a {@link SyntheticInstall} in fresh JVMs, timing what JMH cannot: setup and launch
+ * end to end, JVM start included. Runs offline, the entrypoint is compiled locally with the JDK's compiler.
+ * <p>
+ * Cold boots start without the caches the launch target keeps in .cache and libraries/.cache, warm boots start with
+ * the caches a previous boot left behind. Neither drops the OS page cache, that needs root. Flags under test are
+ * passed on with --jvm-arg, for example --jvm-arg=-DFAST_BOOT=true. Run from the jmh runtime classpath:
+ * <pre>
+ * java -cp &lt;jmh runtime classpath&gt; org.mangorage.mangobotlaunch.benchmark.StartupMacroBenchmark --plugins=8 --libraries=40 --runs=5
+ * </pre>
+ * Options, all --name=value: plugins (8), dependencies per plugin (20), libraries (40), packages per jar (4),
+ * classes per package (25), runs per mode (5), timeout in seconds per boot (120), work (a directory to keep the
+ * install and logs in, a temporary one otherwise), module-path (defaults to the bootstrap and the launch target
+ * found on the classpath) and jvm-arg (repeatable).
+ */
+public final class StartupMacroBenchmark {
+    private static final List<String> ROOT_MODULES = List.of("org.mangorage.mangobotlaunchtarget", "org.mangorage.bootstrap");
+
+    private StartupMacroBenchmark() {}
+
+    public static void main(String[] args) throws Exception {
+        final Map<String, List<String>> options = parse(args);
+        final var layout = new SyntheticInstall.Layout(
+                option(options, "plugins", 8),
+                option(options, "dependencies", 20),
+                option(options, "libraries", 40),
+                option(options, "packages", 4),
+                option(options, "classes", 25)
+        );
+        final int runs = option(options, "runs", 5);
+        final int timeout = option(options, "timeout", 120);
+        final List<String> jvmArgs = options.getOrDefault("jvm-arg", List.of());
+        final List<Path> modulePath = options.containsKey("module-path")
+                ? splitPath(options.get("module-path").get(0))
+                : launchModulePath();
+
+        final boolean keep = options.containsKey("work");
+        final var root = keep ? Files.createDirectories(Path.of(options.get("work").get(0)).toAbsolutePath()) : Files.createTempDirectory("startup-bench");
+        try {
+            if (!Files.isDirectory(root.resolve("plugins"))) SyntheticInstall.write(root, layout, modulePath);
+            System.out.println("Install " + layout + " in " + root);
+            System.out.println("Module path " + modulePath);
+
+            final Map<String, Map<String, List<Double>>> results = new LinkedHashMap<>();
+            final var csv = new StringBuilder("mode,run,wall.ms,cpu.ms,boot.ms,jars.opened,module.readers.opened,heap.peak.mib\n");
+
+            for (int run = 0; run < runs; run++) {
+                SyntheticJars.deleteRecursively(root.resolve(".cache"));
+                SyntheticJars.deleteRecursively(root.resolve("libraries/.cache"));
+                record(results, csv, "cold", run, boot(root, modulePath, jvmArgs, timeout, "cold-" + run));
+            }
+
+            // Leaves the caches behind for the measured warm boots
+            boot(root, modulePath, jvmArgs, timeout, "warm-prime");
+            for (int run = 0; run < runs; run++) {
+                record(results, csv, "warm", run, boot(root, modulePath, jvmArgs, timeout, "warm-" + run));
+            }
+
+            Files.writeString(root.resolve("runs.csv"), csv, StandardCharsets.UTF_8);
+            report(results);
+        } finally {
+            if (!keep) SyntheticJars.deleteRecursively(root);
+        }
+    }
+
+    /**
+     * What runs in the booted JVM: finds the launch target like the bootstrap does, sets it up over the boot layer,
+     * launches it and writes its own cpu time and peak heap to args[0].
+     */
+    public static final class Boot {
+        private Boot() {}
+
+        public static void main(String[] args) throws IOException {
+            final var target = ServiceLoader.load(ILaunchTarget.class)
+                    .stream()
+                    .map(ServiceLoader.Provider::get)
+                    .filter(candidate -> candidate.getId().equals("mangobot"))
+                    .findAny()
+                    .orElseThrow(() -> new IllegalStateException("Unable to find the mangobot launch target on the module path"));
+
+            final var boot = ModuleLayer.boot();
+            target.launch(target.setup(boot, boot, new String[0]), new String[0]);
+
+            long heapPeak = 0;
+            for (var pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) heapPeak += pool.getPeakUsage().getUsed();
+            }
+            final long cpu = ManagementFactory.getOperatingSystemMXBean() instanceof com.sun.management.OperatingSystemMXBean os
+                    ? os.getProcessCpuTime()
+                    : -1;
+
+            Files.writeString(Path.of(args[0]), "cpu.ns=" + cpu + "\nheap.peak.bytes=" + heapPeak + "\n", StandardCharsets.UTF_8);
+            // The entrypoint may have left non-daemon threads behind
+            System.exit(0);
+        }
+    }
+
+    private static Map<String, Double> boot(Path root, List<Path> modulePath, List<String> jvmArgs, int timeout, String name) throws IOException, InterruptedException {
+        final var result = root.resolve("boot-" + name + ".properties");
+        final var profile = root.resolve("boot-" + name + "-profile.properties");
+        final var log = root.resolve("boot-" + name + ".log");
+        Files.deleteIfExists(result);
+        Files.deleteIfExists(profile);
+
+        final List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmArgs);
+        command.add("-DSTARTUP_PROFILE=true");
+        command.add("-DSTARTUP_PROFILE_FILE=" + profile);
+        command.add("--module-path");
+        command.add(joinPath(modulePath));
+        command.add("--add-modules");
+        command.add("ALL-MODULE-PATH");
+        command.add("-cp");
+        command.add(ownLocation().toString());
+        command.add(Boot.class.getName());
+        command.add(result.toString());
+
+        final long start = System.nanoTime();
+        final var process = new ProcessBuilder(command)
+                .directory(root.toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(log.toFile())
+                .start();
+        if (!process.waitFor(timeout, TimeUnit.SECONDS)) {
+            process.destroyForcibly();
+            throw new IllegalStateException("Boot " + name + " did not finish within " + timeout + "s, see " + log);
+        }
+        final long wall = System.nanoTime() - start;
+        if (process.exitValue() != 0 || !Files.isRegularFile(result))
+            throw new IllegalStateException("Boot " + name + " failed with exit code " + process.exitValue() + ", see " + log);
+
+        final var own = load(result);
+        final var profiled = Files.isRegularFile(profile) ? load(profile) : new Properties();
+
+        final Map<String, Double> sample = new LinkedHashMap<>();
+        sample.put("wall.ms", wall / 1e6);
+        sample.put("cpu.ms", Long.parseLong(own.getProperty("cpu.ns")) / 1e6);
+        sample.put("boot.ms", Long.parseLong(profiled.getProperty("boot.us", "-1")) / 1e3);
+        sample.put("jars.opened", Double.parseDouble(profiled.getProperty("jars.opened", "-1")));
+        sample.put("module.readers.opened", Double.parseDouble(profiled.getProperty("module.readers.opened", "-1")));
+        sample.put("heap.peak.mib", Long.parseLong(own.getProperty("heap.peak.bytes")) / (1024.0 * 1024.0));
+        return sample;
+    }
+
+    private static void record(Map<String, Map<String, List<Double>>> results, StringBuilder csv, String mode, int run, Map<String, Double> sample) {
+        csv.append(mode).append(',').append(run);
+        sample.forEach((metric, value) -> {
+            results.computeIfAbsent(mode, k -> new LinkedHashMap<>()).computeIfAbsent(metric, k -> new ArrayList<>()).add(value);
+            csv.append(',').append(String.format("%.3f", value));
+        });
+        csv.append('\n');
+        System.out.println(mode + " " + run + " " + sample);
+    }
+
+    private static void report(Map<String, Map<String, List<Double>>> results) {
+        System.out.println();
+        System.out.printf("%-6s %-21s %10s %10s %10s %10s %10s%n", "mode", "metric", "min", "median", "max", "mean", "stddev");
+        results.forEach((mode, metrics) -> metrics.forEach((metric, values) -> {
+            final var sorted = values.stream().mapToDouble(Double::doubleValue).sorted().toArray();
+            final double mean = Arrays.stream(sorted).average().orElse(0);
+            final double variance = Arrays.stream(sorted).map(v -> (v - mean) * (v - mean)).sum() / Math.max(1, sorted.length - 1);
+            final double median = sorted.length % 2 == 1
+                    ? sorted[sorted.length / 2]
+                    : (sorted[sorted.length / 2 - 1] + sorted[sorted.length / 2]) / 2;
+            System.out.printf("%-6s %-21s %10.1f %10.1f %10.1f %10.1f %10.1f%n",
+                    mode, metric, sorted[0], median, sorted[sorted.length - 1], mean, Math.sqrt(variance));
+        }));
+    }
+
+    /**
+     * @return the launch target, the bootstrap and whatever they require, out of the classpath entries that are modules
+     */
+    private static List<Path> launchModulePath() {
+        final var own = ownLocation();
+        final Map<String, ModuleReference> modules = new HashMap<>();
+        final Map<String, Path> locations = new HashMap<>();
+        for (Path entry : splitPath(System.getProperty("java.class.path"))) {
+            if (entry.equals(own) || !Files.exists(entry)) continue;
+            try {
+                for (ModuleReference reference : ModuleFinder.of(entry).findAll()) {
+                    final var name = reference.descriptor().name();
+                    if (modules.putIfAbsent(name, reference) == null) locations.put(name, entry);
+                }
+            } catch (FindException e) {
+                // Not something the module system accepts, so not part of the launch
+            }
+        }
+
+        final List<Path> modulePath = new ArrayList<>();
+        final var pending = new ArrayDeque<>(ROOT_MODULES);
+        final var seen = new HashSet<String>();
+        while (!pending.isEmpty()) {
+            final var name = pending.poll();
+            if (!seen.add(name)) continue;
+            final var reference = modules.get(name);
+            if (reference == null) {
+                if (ROOT_MODULES.contains(name))
+                    throw new IllegalStateException("Module " + name + " is not on the classpath, pass --module-path");
+                continue; // A system module
+            }
+            modulePath.add(locations.get(name));
+            reference.descriptor().requires().forEach(requires -> pending.add(requires.name()));
+        }
+        return modulePath;
+    }
+
+    private static Path ownLocation() {
+        try {
+            return Path.of(StartupMacroBenchmark.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Properties load(Path file) throws IOException {
+        final var properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        return properties;
+    }
+
+    private static Map<String, List<String>> parse(String[] args) {
+        final Map<String, List<String>> options = new HashMap<>();
+        for (String arg : args) {
+            final int equals = arg.indexOf('=');
+            if (!arg.startsWith("--") || equals < 0)
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            options.computeIfAbsent(arg.substring(2, equals), k -> new ArrayList<>()).add(arg.substring(equals + 1));
+        }
+        return options;
+    }
+
+    private static int option(Map<String, List<String>> options, String name, int defaultValue) {
+        final var values = options.get(name);
+        return values == null ? defaultValue : Integer.parseInt(values.get(0));
+    }
+
+    private static List<Path> splitPath(String path) {
+        final List<Path> entries = new ArrayList<>();
+        for (String entry : path.split(File.pathSeparator)) {
+            if (!entry.isBlank()) entries.add(Path.of(entry).toAbsolutePath());
+        }
+        return entries;
+    }
+
+    private static String joinPath(List<Path> entries) {
+        return String.join(File.pathSeparator, entries.stream().map(Path::toString).toList());
+    }
+}
@@ -0,0 +1,168 @@
+package org.mangorage.mangobotlaunch.benchmark;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaFileObject;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Writes the plugins and libraries folders of a MangoBot install, the way the installer leaves them.
+ * <p>
+ * Libraries are laid out like a Maven repository and cycle through module-info, Automatic-Module-Name,
+ * Bundle-SymbolicName and unnamed jars. Every plugin lists its share of them in installer-data/dependencies.json,
+ * neighbouring plugins overlap so libraries are shared. The entrypoint plugin is compiled here against the
+ * bootstrap, it loads every class of the layer from init so a boot defines everything it generated.
+ */
+public final class SyntheticInstall {
+    public static final String ENTRYPOINT_MODULE = "bench.entrypoint";
+
+    /**
+     * @param dependencies dependencies.json entries per plugin, capped at libraries
+     */
+    public record Layout(int plugins, int dependencies, int libraries, int packages, int classesPerPackage) {}
+
+    private static final SyntheticJars.Kind[] LIBRARY_KINDS = {
+            SyntheticJars.Kind.MODULE_INFO,
+            SyntheticJars.Kind.AUTOMATIC_MODULE_NAME,
+            SyntheticJars.Kind.BUNDLE_SYMBOLIC_NAME,
+            SyntheticJars.Kind.UNNAMED
+    };
+
+    private static final String ENTRYPOINT_MODULE_INFO = """
+            module bench.entrypoint {
+                requires org.mangorage.bootstrap;
+                provides org.mangorage.bootstrap.api.launch.ILaunchTargetEntrypoint with bench.entrypoint.Entrypoint;
+            }
+            """;
+
+    private static final String ENTRYPOINT_SOURCE = """
+            package bench.entrypoint;
+
+            import org.mangorage.bootstrap.api.launch.ILaunchTargetEntrypoint;
+
+            public final class Entrypoint implements ILaunchTargetEntrypoint {
+                @Override
+                public String getLaunchTargetId() {
+                    return "mangobot";
+                }
+
+                @Override
+                public void init(String[] args) {
+                    int loaded = 0;
+                    for (Module module : Entrypoint.class.getModule().getLayer().modules()) {
+                        for (String pkg : module.getPackages()) {
+                            for (int c = 0; Class.forName(module, pkg + ".C" + c) != null; c++) loaded++;
+                        }
+                    }
+                    System.out.println("bench.entrypoint loaded " + loaded + " classes");
+                }
+            }
+            """;
+
+    private SyntheticInstall() {}
+
+    /**
+     * Writes root/plugins and root/libraries, both must not exist yet.
+     *
+     * @param modulePath where the entrypoint finds org.mangorage.bootstrap to compile against
+     */
+    public static void write(Path root, Layout layout, List<Path> modulePath) throws IOException {
+        final var plugins = Files.createDirectories(root.resolve("plugins"));
+        final var libraries = Files.createDirectories(root.resolve("libraries"));
+
+        final List<String> outputs = new ArrayList<>(layout.libraries());
+        for (int i = 0; i < layout.libraries(); i++) {
+            outputs.add(writeLibrary(libraries, i, layout));
+        }
+
+        final int perPlugin = Math.min(layout.dependencies(), layout.libraries());
+        for (int plugin = 0; plugin < layout.plugins(); plugin++) {
+            final List<Integer> listed = new ArrayList<>(perPlugin);
+            // Each plugin starts half its share after the previous one, so neighbours have half their libraries in common
+            final int start = plugin * Math.max(1, perPlugin / 2);
+            for (int k = 0; k < perPlugin; k++) {
+                listed.add((start + k) % layout.libraries());
+            }
+
+            final var name = "bench.plugin" + plugin;
+            final var kind = plugin % 2 == 0 ? SyntheticJars.Kind.MODULE_INFO : SyntheticJars.Kind.AUTOMATIC_MODULE_NAME;
+            SyntheticJars.writeJar(plugins, name, kind, layout.packages(), layout.classesPerPackage(),
+                    Map.of("installer-data/dependencies.json", dependenciesJson(listed, outputs)));
+        }
+
+        final var entries = compileEntrypoint(modulePath);
+        entries.put("installer-data/dependencies.json", dependenciesJson(List.of(), outputs));
+        SyntheticJars.writeJar(plugins.resolve(ENTRYPOINT_MODULE + ".jar"), entries);
+    }
+
+    /**
+     * @return the path of the jar relative to libraries, as dependencies.json lists it
+     */
+    private static String writeLibrary(Path libraries, int index, Layout layout) throws IOException {
+        final var artifact = "library" + index;
+        final var directory = Files.createDirectories(libraries.resolve("bench").resolve(artifact).resolve("1.0.0"));
+        final var kind = LIBRARY_KINDS[index % LIBRARY_KINDS.length];
+
+        var jar = SyntheticJars.writeJar(directory, "bench." + artifact, kind, layout.packages(), layout.classesPerPackage());
+        if (kind == SyntheticJars.Kind.BUNDLE_SYMBOLIC_NAME) {
+            // ModuleFinder has to accept every library at resolution, give it a Maven file name like real bundles have
+            jar = Files.move(jar, directory.resolve(artifact + "-1.0.0.jar"));
+        }
+        return libraries.relativize(jar).toString().replace('\\', '/');
+    }
+
+    private static byte[] dependenciesJson(List<Integer> listed, List<String> outputs) {
+        return listed.stream()
+                .map(i -> "{\"url\":\"\",\"group\":\"bench\",\"artifact\":\"library" + i
+                        + "\",\"version\":\"1.0.0\",\"target\":\"\",\"output\":\"" + outputs.get(i) + "\"}")
+                .collect(Collectors.joining(",", "{\"dependencies\":[", "]}"))
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the compiled entrypoint module, by jar entry
+     */
+    private static Map<String, byte[]> compileEntrypoint(List<Path> modulePath) throws IOException {
+        final var compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) throw new IllegalStateException("No system Java compiler, run with a JDK rather than a JRE");
+
+        final var work = Files.createTempDirectory("bench-entrypoint");
+        try {
+            final var sources = Files.createDirectories(work.resolve("src"));
+            final var classes = Files.createDirectories(work.resolve("classes"));
+            Files.writeString(sources.resolve("module-info.java"), ENTRYPOINT_MODULE_INFO);
+            Files.writeString(Files.createDirectories(sources.resolve("bench/entrypoint")).resolve("Entrypoint.java"), ENTRYPOINT_SOURCE);
+
+            final var diagnostics = new DiagnosticCollector<JavaFileObject>();
+            try (var fileManager = compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8)) {
+                final var units = fileManager.getJavaFileObjects(sources.resolve("module-info.java"), sources.resolve("bench/entrypoint/Entrypoint.java"));
+                final var options = List.of(
+                        "--module-path", modulePath.stream().map(Path::toString).collect(Collectors.joining(File.pathSeparator)),
+                        "-d", classes.toString()
+                );
+                if (!compiler.getTask(null, fileManager, diagnostics, options, null, units).call())
+                    throw new IllegalStateException("Failed to compile the entrypoint " + diagnostics.getDiagnostics());
+            }
+
+            final Map<String, byte[]> entries = new LinkedHashMap<>();
+            try (Stream<Path> files = Files.walk(classes)) {
+                for (Path file : files.filter(Files::isRegularFile).sorted().toList()) {
+                    entries.put(classes.relativize(file).toString().replace('\\', '/'), Files.readAllBytes(file));
+                }
+            }
+            return entries;
+        } finally {
+            SyntheticJars.deleteRecursively(work);
+        }
+    }
+}
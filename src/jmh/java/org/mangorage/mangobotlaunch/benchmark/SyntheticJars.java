@@ -0,0 +1,222 @@
+package org.mangorage.mangobotlaunch.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.stream.Stream;
+
+/**
+ * Writes jars with real, definable class files so benchmarks never depend on anything outside the build.
+ */
+public final class SyntheticJars {
+    public enum Kind {
+        MODULE_INFO,
+        MULTI_RELEASE,
+        AUTOMATIC_MODULE_NAME,
+        BUNDLE_SYMBOLIC_NAME,
+        UNNAMED
+    }
+
+    private SyntheticJars() {}
+
+    /**
+     * Writes a jar named after moduleName holding packages * classesPerPackage classes under moduleName.pN.
+     */
+    public static Path writeJar(Path directory, String moduleName, Kind kind, int packages, int classesPerPackage) throws IOException {
+        return writeJar(directory, moduleName, kind, packages, classesPerPackage, Map.of());
+    }
+
+    /**
+     * @param extraEntries additional entries by path, usually resources outside of the module's packages
+     */
+    public static Path writeJar(Path directory, String moduleName, Kind kind, int packages, int classesPerPackage, Map<String, byte[]> extraEntries) throws IOException {
+        final var fileName = switch (kind) {
+            case UNNAMED -> moduleName.replace('.', '-') + "-1.0.0.jar";
+            // A file name ModuleFinder cannot derive a name from, so Bundle-SymbolicName is used
+            case BUNDLE_SYMBOLIC_NAME -> "1-" + moduleName + ".jar";
+            default -> moduleName + ".jar";
+        };
+        final var jar = directory.resolve(fileName);
+
+        final var manifest = new Manifest();
+        final var attributes = manifest.getMainAttributes();
+        attributes.put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        switch (kind) {
+            case MULTI_RELEASE -> {
+                attributes.put(Attributes.Name.MULTI_RELEASE, "true");
+                attributes.putValue("Automatic-Module-Name", moduleName);
+            }
+            case AUTOMATIC_MODULE_NAME -> attributes.putValue("Automatic-Module-Name", moduleName);
+            case BUNDLE_SYMBOLIC_NAME -> attributes.putValue("Bundle-SymbolicName", moduleName);
+            default -> {}
+        }
+
+        try (var out = new JarOutputStream(Files.newOutputStream(jar), manifest)) {
+            if (kind == Kind.MODULE_INFO) {
+                out.putNextEntry(new JarEntry("module-info.class"));
+                out.write(moduleInfo(moduleName));
+                out.closeEntry();
+            }
+
+            for (int p = 0; p < packages; p++) {
+                final var pkg = moduleName.replace('.', '/') + "/p" + p;
+                for (int c = 0; c < classesPerPackage; c++) {
+                    final var internalName = pkg + "/C" + c;
+                    out.putNextEntry(new JarEntry(internalName + ".class"));
+                    out.write(classFile(internalName));
+                    out.closeEntry();
+                }
+                out.putNextEntry(new JarEntry(pkg + "/resource.txt"));
+                out.write(pkg.getBytes());
+                out.closeEntry();
+            }
+
+            if (kind == Kind.MULTI_RELEASE) {
+                final var internalName = moduleName.replace('.', '/') + "/p0/C0";
+                out.putNextEntry(new JarEntry("META-INF/versions/11/" + internalName + ".class"));
+                out.write(classFile(internalName));
+                out.closeEntry();
+            }
+
+            for (var entry : extraEntries.entrySet()) {
+                out.putNextEntry(new JarEntry(entry.getKey()));
+                out.write(entry.getValue());
+                out.closeEntry();
+            }
+        }
+
+        return jar;
+    }
+
+    /**
+     * Writes a jar holding exactly entries, without a manifest.
+     */
+    public static Path writeJar(Path jar, Map<String, byte[]> entries) throws IOException {
+        try (var out = new JarOutputStream(Files.newOutputStream(jar))) {
+            for (var entry : entries.entrySet()) {
+                out.putNextEntry(new JarEntry(entry.getKey()));
+                out.write(entry.getValue());
+                out.closeEntry();
+            }
+        }
+        return jar;
+    }
+
+    /**
+     * @return a minimal public class extending Object, enough for ClassLoader.defineClass
+     */
+    public static byte[] classFile(String internalName) {
+        return write(out -> {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(61); // Java 17
+
+            out.writeShort(5); // constant pool count + 1
+            utf8(out, internalName);            // #1
+            classRef(out, 1);                   // #2
+            utf8(out, "java/lang/Object");      // #3
+            classRef(out, 3);                   // #4
+
+            out.writeShort(0x0021); // public super
+            out.writeShort(2);
+            out.writeShort(4);
+            out.writeShort(0); // interfaces
+            out.writeShort(0); // fields
+            out.writeShort(0); // methods
+            out.writeShort(0); // attributes
+        });
+    }
+
+    /**
+     * @return a module-info.class for moduleName that only requires java.base
+     */
+    public static byte[] moduleInfo(String moduleName) {
+        return write(out -> {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(61);
+
+            out.writeShort(8);
+            utf8(out, "module-info");   // #1
+            classRef(out, 1);           // #2
+            utf8(out, "Module");        // #3
+            utf8(out, moduleName);      // #4
+            moduleRef(out, 4);          // #5
+            utf8(out, "java.base");     // #6
+            moduleRef(out, 6);          // #7
+
+            out.writeShort(0x8000); // ACC_MODULE
+            out.writeShort(2);
+            out.writeShort(0);
+            out.writeShort(0);
+            out.writeShort(0);
+            out.writeShort(0);
+
+            out.writeShort(1);
+            out.writeShort(3);
+            out.writeInt(22); // attribute length
+            out.writeShort(5);
+            out.writeShort(0); // flags
+            out.writeShort(0); // version
+            out.writeShort(1); // requires
+            out.writeShort(7);
+            out.writeShort(0x8000); // mandated
+            out.writeShort(0);
+            out.writeShort(0); // exports
+            out.writeShort(0); // opens
+            out.writeShort(0); // uses
+            out.writeShort(0); // provides
+        });
+    }
+
+    public static void deleteRecursively(Path directory) throws IOException {
+        if (directory == null || !Files.exists(directory)) return;
+        try (Stream<Path> walk = Files.walk(directory)) {
+            walk.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.delete(path);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+
+    private interface Writer {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private static byte[] write(Writer writer) {
+        final var bytes = new ByteArrayOutputStream();
+        try (var out = new DataOutputStream(bytes)) {
+            writer.write(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void utf8(DataOutputStream out, String value) throws IOException {
+        out.writeByte(1);
+        out.writeUTF(value);
+    }
+
+    private static void classRef(DataOutputStream out, int nameIndex) throws IOException {
+        out.writeByte(7);
+        out.writeShort(nameIndex);
+    }
+
+    private static void moduleRef(DataOutputStream out, int nameIndex) throws IOException {
+        out.writeByte(19);
+        out.writeShort(nameIndex);
+    }
+}
@@ -0,0 +1,102 @@
+package org.mangorage.mangobotlaunch.launch;
+
+import org.mangorage.bootstrap.api.transformer.IClassTransformer;
+import org.mangorage.bootstrap.api.transformer.TransformResult;
+import org.mangorage.bootstrap.api.transformer.TransformerFlag;
+import org.mangorage.mangobotlaunch.api.transformer.ITargetedClassTransformer;
+import org.mangorage.mangobotlaunch.api.transformer.TransformerTargets;
+import org.mangorage.mangobotlaunch.benchmark.SyntheticJars;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ClassTransformers#transform(String, byte[])} with N registered transformers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClassTransformersBenchmark {
+    private static final int CLASSES = 1024;
+
+    public enum Registered {
+        /**
+         * Every transformer sees every class and rewrites nothing.
+         */
+        NO_OP,
+        /**
+         * Like NO_OP, but the last transformer rewrites every class.
+         */
+        REWRITE_LAST,
+        /**
+         * Every transformer targets a package the classes are not in.
+         */
+        TARGETED_ELSEWHERE
+    }
+
+    @Param({"1", "10", "50"})
+    public int transformers;
+
+    @Param({"NO_OP", "REWRITE_LAST", "TARGETED_ELSEWHERE"})
+    public Registered registered;
+
+    private ClassTransformers classTransformers;
+    private String[] names;
+    private byte[][] classes;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        classTransformers = new ClassTransformers(null);
+        for (int i = 0; i < transformers; i++) {
+            final boolean rewrites = registered == Registered.REWRITE_LAST && i == transformers - 1;
+            classTransformers.add(registered == Registered.TARGETED_ELSEWHERE
+                    ? new Targeted("bench.targeted" + i, TransformerTargets.packages("bench.other" + i))
+                    : new Plain("bench.plain" + i, rewrites));
+        }
+
+        names = new String[CLASSES];
+        classes = new byte[CLASSES][];
+        for (int i = 0; i < CLASSES; i++) {
+            names[i] = "bench.transform.p" + (i % 16) + ".C" + i;
+            classes[i] = SyntheticJars.classFile(names[i].replace('.', '/'));
+        }
+    }
+
+    @Benchmark
+    public byte[] transform() {
+        final int index = cursor;
+        cursor = (index + 1) & (CLASSES - 1);
+        return classTransformers.transform(names[index], classes[index]);
+    }
+
+    private record Plain(String getName, boolean rewrites) implements IClassTransformer {
+        @Override
+        public TransformResult transform(String name, byte[] classData) {
+            return rewrites
+                    ? new TransformResult(classData.clone(), TransformerFlag.SIMPLE_REWRITE)
+                    : new TransformResult(classData, TransformerFlag.NO_REWRITE);
+        }
+    }
+
+    private record Targeted(String getName, TransformerTargets getTargets) implements ITargetedClassTransformer {
+        @Override
+        public TransformResult transform(String name, byte[] classData) {
+            return new TransformResult(classData, TransformerFlag.NO_REWRITE);
+        }
+    }
+}
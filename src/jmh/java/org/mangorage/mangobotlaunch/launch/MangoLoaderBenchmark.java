@@ -0,0 +1,132 @@
+package org.mangorage.mangobotlaunch.launch;
+
+import org.mangorage.mangobotlaunch.benchmark.SyntheticJars;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link MangoLoaderImpl#loadClass(String)} for already defined classes, classes the parent owns, names in one of
+ * our packages that do not exist, optional classes nobody has, and defining every class of a fresh layer.
+ * Run with -DCLASS_NEGATIVE_CACHE=true and -DPARENT_PACKAGE_INDEX=true in the jvmArgs to compare the delegation caches.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MangoLoaderBenchmark {
+    private static final String[] PARENT_CLASSES = {
+            "java.lang.String",
+            "java.util.ArrayList",
+            "java.util.concurrent.ConcurrentHashMap",
+            "java.lang.invoke.MethodHandle"
+    };
+
+    private static final String[] OPTIONAL_CLASSES = {
+            "ch.qos.logback.classic.Logger",
+            "org.apache.logging.log4j.LogManager",
+            "com.fasterxml.jackson.databind.ObjectMapper",
+            "java.lang.invoke.NoSuchHelper"
+    };
+
+    @Param({"10", "100"})
+    public int modules;
+
+    private Path directory;
+    private SyntheticLayer layer;
+    private String[] loaded;
+    private String[] missing;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, ClassNotFoundException {
+        directory = Files.createTempDirectory("loader-bench");
+        SyntheticLayer.writeJars(directory, modules, 4, 25);
+        layer = SyntheticLayer.open(directory, modules);
+
+        loaded = layer.classNames().toArray(String[]::new);
+        missing = new String[loaded.length];
+        for (int i = 0; i < loaded.length; i++) {
+            layer.loader().loadClass(loaded[i]);
+            missing[i] = loaded[i] + "Missing";
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        layer.loader().close();
+        SyntheticJars.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public Class<?> loadedHit() throws ClassNotFoundException {
+        return layer.loader().loadClass(loaded[next(loaded.length)]);
+    }
+
+    @Benchmark
+    public Class<?> parent() throws ClassNotFoundException {
+        return layer.loader().loadClass(PARENT_CLASSES[next(PARENT_CLASSES.length)]);
+    }
+
+    /**
+     * What Class.forName probes for optional dependencies cost, the parent has nothing in the package either.
+     */
+    @Benchmark
+    public boolean probeMissingOptional() {
+        try {
+            layer.loader().loadClass(OPTIONAL_CLASSES[next(OPTIONAL_CLASSES.length)]);
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    @Benchmark
+    public Class<?> missInOwnedPackage() throws ClassNotFoundException {
+        return layer.loader().loadClass(missing[next(missing.length)]);
+    }
+
+    /**
+     * Cold path, reads, transforms and defines every class of a new loader over the same jars.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 5)
+    @Measurement(iterations = 10)
+    public int defineAll() throws ClassNotFoundException, IOException {
+        final var fresh = SyntheticLayer.open(directory, modules);
+        try {
+            int defined = 0;
+            for (String name : fresh.classNames()) {
+                if (fresh.loader().loadClass(name) != null) defined++;
+            }
+            return defined;
+        } finally {
+            fresh.loader().close();
+        }
+    }
+
+    private int next(int bound) {
+        final int index = cursor;
+        cursor = index + 1 == bound ? 0 : index + 1;
+        return index;
+    }
+}
@@ -0,0 +1,123 @@
+package org.mangorage.mangobotlaunch.launch;
+
+import org.mangorage.mangobotlaunch.benchmark.SyntheticJars;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Package to module lookups from 8 threads, {@link PackageIndex} against the substring and ConcurrentHashMap lookup
+ * it replaced, and the {@link MangoLoaderImpl#loadClass(String)} paths that go through it.
+ * Run with the gc profiler to compare allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class PackageLookupBenchmark {
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+
+        int next(int bound) {
+            final int index = next;
+            next = index + 1 == bound ? 0 : index + 1;
+            return index;
+        }
+    }
+
+    @Param({"10", "100"})
+    public int modules;
+
+    private Path directory;
+    private SyntheticLayer layer;
+    private Map<String, String> concurrentMap;
+    private PackageIndex<String> index;
+    private String[] classNames;
+    private String[] resourceNames;
+    private String[] missing;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("package-bench");
+        SyntheticLayer.writeJars(directory, modules, 4, 25);
+        layer = SyntheticLayer.open(directory, modules);
+
+        classNames = layer.classNames().toArray(String[]::new);
+        resourceNames = new String[classNames.length];
+        missing = new String[classNames.length];
+
+        final Map<String, String> packages = new HashMap<>();
+        for (int i = 0; i < classNames.length; i++) {
+            final var name = classNames[i];
+            packages.put(name.substring(0, name.lastIndexOf('.')), name);
+            resourceNames[i] = name.replace('.', '/') + ".class";
+            missing[i] = name + "Missing";
+        }
+        concurrentMap = new ConcurrentHashMap<>(packages);
+        index = new PackageIndex<>(packages);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        layer.loader().close();
+        SyntheticJars.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public String concurrentMapClass(Cursor cursor) {
+        final var cn = classNames[cursor.next(classNames.length)];
+        final int pos = cn.lastIndexOf('.');
+        return pos < 0 ? null : concurrentMap.get(cn.substring(0, pos));
+    }
+
+    @Benchmark
+    public String indexClass(Cursor cursor) {
+        return index.getForClass(classNames[cursor.next(classNames.length)]);
+    }
+
+    @Benchmark
+    public String concurrentMapResource(Cursor cursor) {
+        final var name = resourceNames[cursor.next(resourceNames.length)];
+        final int pos = name.lastIndexOf('/');
+        return pos < 0 ? null : concurrentMap.get(name.substring(0, pos).replace('/', '.'));
+    }
+
+    @Benchmark
+    public String indexResource(Cursor cursor) {
+        return index.getForResource(resourceNames[cursor.next(resourceNames.length)]);
+    }
+
+    @Benchmark
+    public Class<?> loadClassParent() throws ClassNotFoundException {
+        return layer.loader().loadClass("java.util.ArrayList");
+    }
+
+    @Benchmark
+    public Class<?> loadClassMissInOwnedPackage(Cursor cursor) throws ClassNotFoundException {
+        return layer.loader().loadClass(missing[cursor.next(missing.length)]);
+    }
+}
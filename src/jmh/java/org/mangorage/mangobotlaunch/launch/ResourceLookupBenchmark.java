@@ -0,0 +1,81 @@
+package org.mangorage.mangobotlaunch.launch;
+
+import org.mangorage.mangobotlaunch.benchmark.SyntheticJars;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Enumeration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link MangoLoaderImpl#findResource(String)} and findResources across many modules.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResourceLookupBenchmark {
+
+    @Param({"10", "100"})
+    public int modules;
+
+    private Path directory;
+    private MangoLoaderImpl loader;
+    private String lastModuleResource;
+    private String packagedClass;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("resource-bench");
+        SyntheticLayer.writeJars(directory, modules, 2, 5);
+        loader = SyntheticLayer.open(directory, modules).loader();
+
+        lastModuleResource = SyntheticLayer.uniqueResource(modules - 1);
+        packagedClass = SyntheticLayer.moduleName(modules - 1).replace('.', '/') + "/p1/C4.class";
+        if (loader.findResource(lastModuleResource) == null || loader.findResource(packagedClass) == null)
+            throw new IllegalStateException("Synthetic resources are not visible");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        loader.close();
+        SyntheticJars.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public URL findRootResource() {
+        return loader.findResource(lastModuleResource);
+    }
+
+    @Benchmark
+    public URL findPackagedResource() {
+        return loader.findResource(packagedClass);
+    }
+
+    @Benchmark
+    public URL findMissingResource() {
+        return loader.findResource("bench-missing.properties");
+    }
+
+    @Benchmark
+    public Enumeration<URL> findSharedResources() throws IOException {
+        return loader.findResources(SyntheticLayer.SHARED_RESOURCE);
+    }
+}
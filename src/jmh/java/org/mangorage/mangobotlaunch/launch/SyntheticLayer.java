@@ -0,0 +1,87 @@
+package org.mangorage.mangobotlaunch.launch;
+
+import org.mangorage.mangobotlaunch.benchmark.SyntheticJars;
+
+import java.io.IOException;
+import java.lang.module.Configuration;
+import java.lang.module.ModuleFinder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A module layer of synthetic jars defined to a {@link MangoLoaderImpl}, the way {@link MangoBotLaunchTarget} sets it up.
+ * Module i is named bench.mi and holds the packages bench.mi.pN.
+ * <p>
+ * Every jar also carries bench-shared.txt and bench-mi.properties for resource lookups, at the root so they are
+ * visible without opening the module.
+ */
+final class SyntheticLayer {
+    static final String SHARED_RESOURCE = "bench-shared.txt";
+
+    private final MangoLoaderImpl loader;
+    private final List<String> classNames;
+
+    private SyntheticLayer(MangoLoaderImpl loader, List<String> classNames) {
+        this.loader = loader;
+        this.classNames = classNames;
+    }
+
+    /**
+     * Writes the jars into directory, call {@link #open(Path, int)} to get more loaders over the same jars.
+     */
+    static void writeJars(Path directory, int modules, int packagesPerModule, int classesPerPackage) throws IOException {
+        for (int i = 0; i < modules; i++) {
+            final Map<String, byte[]> resources = new HashMap<>();
+            resources.put(SHARED_RESOURCE, ("m" + i).getBytes(StandardCharsets.UTF_8));
+            resources.put(uniqueResource(i), ("id=" + i).getBytes(StandardCharsets.UTF_8));
+            SyntheticJars.writeJar(directory, moduleName(i), SyntheticJars.Kind.MODULE_INFO, packagesPerModule, classesPerPackage, resources);
+        }
+    }
+
+    static SyntheticLayer open(Path directory, int modules) {
+        final Set<String> roots = new HashSet<>();
+        for (int i = 0; i < modules; i++) {
+            roots.add(moduleName(i));
+        }
+
+        final var parent = ModuleLayer.boot();
+        final var configuration = Configuration.resolve(ModuleFinder.of(directory), List.of(parent.configuration()), ModuleFinder.of(), roots);
+        final var loader = new MangoLoaderImpl(configuration.modules(), SyntheticLayer.class.getClassLoader());
+        final var controller = ModuleLayer.defineModules(configuration, List.of(parent), name -> loader);
+        loader.load(controller.layer(), controller);
+
+        final List<String> classNames = new ArrayList<>();
+        configuration.modules().forEach(module -> module.reference().descriptor().packages().forEach(pkg -> {
+            for (int c = 0; ; c++) {
+                final var name = pkg + ".C" + c;
+                if (loader.getClassBytes(name) == null) break;
+                classNames.add(name);
+            }
+        }));
+        classNames.sort(null);
+
+        return new SyntheticLayer(loader, classNames);
+    }
+
+    static String moduleName(int module) {
+        return "bench.m" + module;
+    }
+
+    static String uniqueResource(int module) {
+        return "bench-m" + module + ".properties";
+    }
+
+    MangoLoaderImpl loader() {
+        return loader;
+    }
+
+    List<String> classNames() {
+        return classNames;
+    }
+}
@@ -1,6 +1,12 @@
 module org.mangorage.mangobotlaunchtarget {
     requires org.mangorage.bootstrap;
     requires java.logging;
+    requires java.management;
+    requires static jdk.jfr;
+
+    exports org.mangorage.mangobotlaunch.api.metrics;
+    exports org.mangorage.mangobotlaunch.api.plugin;
+    exports org.mangorage.mangobotlaunch.api.transformer;
 
     opens org.mangorage.mangobotlaunch.launch to org.mangorage.bootstrap;
     opens org.mangorage.mangobotlaunch.util to org.mangorage.bootstrap;
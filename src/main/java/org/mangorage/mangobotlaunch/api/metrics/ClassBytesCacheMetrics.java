@@ -0,0 +1,24 @@
+package org.mangorage.mangobotlaunch.api.metrics;
+
+/**
+ * Point in time copy of the getClassBytes cache counters, all zero unless -DCLASS_BYTES_CACHE=true.
+ *
+ * @param hits      calls answered from the cache
+ * @param misses    calls that read the class again
+ * @param evictions entries dropped to stay within the budget
+ * @param entries   classes currently cached
+ * @param bytes     bytes currently cached, including a rough per entry overhead
+ * @param maxBytes  the budget
+ */
+public record ClassBytesCacheMetrics(long hits, long misses, long evictions, long entries, long bytes, long maxBytes) {
+
+    public static final ClassBytesCacheMetrics EMPTY = new ClassBytesCacheMetrics(0, 0, 0, 0, 0, 0);
+
+    /**
+     * @return the share of calls answered from the cache, 0 before any call
+     */
+    public double hitRatio() {
+        final long calls = hits + misses;
+        return calls == 0 ? 0 : (double) hits / calls;
+    }
+}
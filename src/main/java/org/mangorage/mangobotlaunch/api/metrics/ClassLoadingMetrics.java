@@ -0,0 +1,26 @@
+package org.mangorage.mangobotlaunch.api.metrics;
+
+import java.util.Map;
+
+/**
+ * Point in time copy of the class loading counters, all zero unless -DCLASS_LOADING_METRICS=true.
+ *
+ * @param moduleReads       class bytes read, per module
+ * @param transformers      time spent in each transformer, per transformer name
+ * @param defines           calls to defineClass
+ * @param parentDelegations classes handed to the parent loader
+ * @param resourceHits      resource lookups that found something
+ * @param resourceMisses    resource lookups that found nothing
+ */
+public record ClassLoadingMetrics(Map<String, Timing> moduleReads, Map<String, Timing> transformers, Timing defines,
+                                  long parentDelegations, long resourceHits, long resourceMisses) {
+
+    public static final ClassLoadingMetrics EMPTY = new ClassLoadingMetrics(Map.of(), Map.of(), new Timing(0, 0), 0, 0, 0);
+
+    public ClassLoadingMetrics {
+        moduleReads = Map.copyOf(moduleReads);
+        transformers = Map.copyOf(transformers);
+    }
+
+    public record Timing(long count, long nanos) {}
+}
@@ -0,0 +1,27 @@
+package org.mangorage.mangobotlaunch.api.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link ClassLoadingMetrics}, registered per loader as org.mangorage.mangobotlaunch:type=ClassLoading,name=base
+ * and, with plugin layers, name=&lt;plugin module&gt; for each plugin's loader.
+ */
+public interface ClassLoadingMetricsMXBean {
+    Map<String, Long> getModuleReadCounts();
+
+    Map<String, Long> getModuleReadNanos();
+
+    Map<String, Long> getTransformerCounts();
+
+    Map<String, Long> getTransformerNanos();
+
+    long getDefineCount();
+
+    long getDefineNanos();
+
+    long getParentDelegationCount();
+
+    long getResourceHitCount();
+
+    long getResourceMissCount();
+}
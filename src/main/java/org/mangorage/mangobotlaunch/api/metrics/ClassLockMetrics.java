@@ -0,0 +1,25 @@
+package org.mangorage.mangobotlaunch.api.metrics;
+
+import java.util.List;
+
+/**
+ * Point in time copy of the striped class loading lock counters, empty unless -DSTRIPED_CLASS_LOCKS=true.
+ *
+ * @param stripeWaits waits for a stripe or for another thread's definition, per stripe, uncontended loads count nothing
+ * @param joined      loads that waited for another thread to define the same class instead of defining it again
+ */
+public record ClassLockMetrics(List<ClassLoadingMetrics.Timing> stripeWaits, long joined) {
+
+    public static final ClassLockMetrics EMPTY = new ClassLockMetrics(List.of(), 0);
+
+    public ClassLockMetrics {
+        stripeWaits = List.copyOf(stripeWaits);
+    }
+
+    /**
+     * @return time spent waiting across all stripes
+     */
+    public long waitNanos() {
+        return stripeWaits.stream().mapToLong(ClassLoadingMetrics.Timing::nanos).sum();
+    }
+}
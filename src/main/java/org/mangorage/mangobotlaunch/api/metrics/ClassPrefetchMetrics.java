@@ -0,0 +1,34 @@
+package org.mangorage.mangobotlaunch.api.metrics;
+
+/**
+ * Point in time copy of the package prefetch counters, all zero unless -DCLASS_PREFETCH=true.
+ *
+ * @param hits              class reads served from the prefetch buffer
+ * @param misses            class reads that went to the jar
+ * @param packages          packages read ahead
+ * @param prefetchedClasses classes read ahead
+ * @param prefetchedBytes   bytes read ahead
+ * @param usedBytes         prefetched bytes that were served to a read
+ * @param bufferedBytes     prefetched bytes still waiting in the buffer
+ * @param skippedBytes      bytes not read ahead because the buffer was full
+ */
+public record ClassPrefetchMetrics(long hits, long misses, long packages, long prefetchedClasses, long prefetchedBytes,
+                                   long usedBytes, long bufferedBytes, long skippedBytes) {
+
+    public static final ClassPrefetchMetrics EMPTY = new ClassPrefetchMetrics(0, 0, 0, 0, 0, 0, 0, 0);
+
+    /**
+     * @return the share of class reads served from the buffer, 0 before any read
+     */
+    public double hitRatio() {
+        final long reads = hits + misses;
+        return reads == 0 ? 0 : (double) hits / reads;
+    }
+
+    /**
+     * @return bytes read ahead that no read has used, either still buffered or dropped
+     */
+    public long wastedBytes() {
+        return prefetchedBytes - usedBytes;
+    }
+}
@@ -0,0 +1,34 @@
+package org.mangorage.mangobotlaunch.api.plugin;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JMX view of the per plugin module layers, registered as org.mangorage.mangobotlaunch:type=PluginLayers
+ * when -DPLUGIN_LAYERS=true.
+ */
+public interface PluginLayersMXBean {
+    /**
+     * @return plugin module names, dependencies before the plugins requiring them
+     */
+    List<String> getPlugins();
+
+    /**
+     * @return how long building the library layer and every plugin layer took at startup
+     */
+    long getSetupNanos();
+
+    long getReloadCount();
+
+    /**
+     * @return how long the last reload of each plugin took, including the plugins depending on it
+     */
+    Map<String, Long> getLastReloadNanos();
+
+    /**
+     * Tears down the layer of plugin and of every plugin requiring it, and builds them again from plugins/.
+     *
+     * @return how long the reload took
+     */
+    long reload(String plugin);
+}
@@ -0,0 +1,14 @@
+package org.mangorage.mangobotlaunch.api.transformer;
+
+/**
+ * Turns class bytes into a tree or visitor representation and back, for example an ASM ClassNode.
+ * Pipeline transformers sharing an equal codec parse and write the class only once between them,
+ * so codecs should be shared instances or implement equals.
+ *
+ * @param <T> the representation handed to {@link IPipelineClassTransformer#transform(String, Object)}
+ */
+public interface IClassCodec<T> {
+    T read(String name, byte[] classData);
+
+    byte[] write(String name, T tree);
+}
@@ -0,0 +1,46 @@
+package org.mangorage.mangobotlaunch.api.transformer;
+
+import org.mangorage.bootstrap.api.transformer.TransformResult;
+import org.mangorage.bootstrap.api.transformer.TransformerFlag;
+
+/**
+ * A transformer working on a parsed class instead of raw bytes.
+ * <p>
+ * Consecutive pipeline transformers with the same {@link IClassCodec} are applied in order to one shared
+ * tree, which is written back once after the last of them. Unlike plain transformers, every transformer
+ * in such a run gets to rewrite the class, the run as a whole counts as a single rewrite.
+ *
+ * @param <T> the representation produced by {@link #getCodec()}
+ */
+public interface IPipelineClassTransformer<T> extends ITargetedClassTransformer {
+    IClassCodec<T> getCodec();
+
+    /**
+     * Modifies tree in place.
+     *
+     * @return {@link TransformerFlag#NO_REWRITE} if tree was left untouched
+     */
+    TransformerFlag transform(String name, T tree);
+
+    /**
+     * Pipeline transformers target every class unless overridden.
+     */
+    @Override
+    default TransformerTargets getTargets() {
+        return null;
+    }
+
+    /**
+     * Used when this transformer runs on its own.
+     */
+    @Override
+    default TransformResult transform(String name, byte[] classData) {
+        final var codec = getCodec();
+        final var tree = codec.read(name, classData);
+        final var flag = transform(name, tree);
+        if (flag == TransformerFlag.NO_REWRITE) {
+            return new TransformResult(classData, flag);
+        }
+        return new TransformResult(codec.write(name, tree), flag);
+    }
+}
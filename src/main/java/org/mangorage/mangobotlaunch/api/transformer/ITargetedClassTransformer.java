@@ -0,0 +1,14 @@
+package org.mangorage.mangobotlaunch.api.transformer;
+
+import org.mangorage.bootstrap.api.transformer.IClassTransformer;
+
+/**
+ * An {@link IClassTransformer} that is only handed the classes it declares interest in.
+ * Register it like any other transformer, plain transformers keep seeing every class.
+ */
+public interface ITargetedClassTransformer extends IClassTransformer {
+    /**
+     * @return the classes to hand to this transformer, null for every class
+     */
+    TransformerTargets getTargets();
+}
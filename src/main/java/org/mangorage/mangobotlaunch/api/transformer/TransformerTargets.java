@@ -0,0 +1,60 @@
+package org.mangorage.mangobotlaunch.api.transformer;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Which classes a transformer wants to see, class names use the binary form (org.example.Foo$Bar).
+ *
+ * @param classNames      exact class names
+ * @param packagePrefixes packages whose classes, including sub packages, are targeted
+ * @param predicates      checked against every class name that did not match anything else
+ */
+public record TransformerTargets(Set<String> classNames, Set<String> packagePrefixes, List<Predicate<String>> predicates) {
+
+    public TransformerTargets {
+        classNames = Set.copyOf(classNames);
+        packagePrefixes = Set.copyOf(packagePrefixes);
+        predicates = List.copyOf(predicates);
+    }
+
+    public static TransformerTargets classes(String... classNames) {
+        return new TransformerTargets(Set.of(classNames), Set.of(), List.of());
+    }
+
+    public static TransformerTargets packages(String... packagePrefixes) {
+        return new TransformerTargets(Set.of(), Set.of(packagePrefixes), List.of());
+    }
+
+    public static TransformerTargets matching(Predicate<String> predicate) {
+        return new TransformerTargets(Set.of(), Set.of(), List.of(predicate));
+    }
+
+    /**
+     * @return targets matching anything this or other matches
+     */
+    public TransformerTargets or(TransformerTargets other) {
+        final Set<String> names = new HashSet<>(classNames);
+        names.addAll(other.classNames());
+        final Set<String> prefixes = new HashSet<>(packagePrefixes);
+        prefixes.addAll(other.packagePrefixes());
+        final List<Predicate<String>> allPredicates = new ArrayList<>(predicates);
+        allPredicates.addAll(other.predicates());
+        return new TransformerTargets(names, prefixes, allPredicates);
+    }
+
+    public boolean matches(String className) {
+        if (classNames.contains(className)) return true;
+        for (String prefix : packagePrefixes) {
+            if (className.startsWith(prefix) && className.length() > prefix.length() && className.charAt(prefix.length()) == '.')
+                return true;
+        }
+        for (Predicate<String> predicate : predicates) {
+            if (predicate.test(className)) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,187 @@
+package org.mangorage.mangobotlaunch.launch;
+
+import org.mangorage.bootstrap.api.logging.IDeferredMangoLogger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Moves logging off the class loading path. With -DASYNC_LOADER_LOG=true events go to a bounded, lock-free queue
+ * and a daemon thread hands them to their logger in batches, in the order they were queued. Otherwise every call
+ * logs right away on the calling thread, as before.
+ * <p>
+ * A full queue either makes the caller drain it and then log its own event (SYNC, the default), or drops the event
+ * and reports the count with the next batch (DROP), see -DASYNC_LOADER_LOG_OVERFLOW. Batches are taken off the queue
+ * under a lock but always written after it is released, so a logger that loads a class another thread is defining
+ * never holds up that thread in turn. Each batch is written in queue order, two batches written at once (the drain
+ * thread and a caller on overflow) may interleave. The drain thread never logs on overflow, so a logger that
+ * loads classes while it drains only queues more events, and a thread already draining drops instead of recursing
+ * into its logger.
+ */
+final class AsyncLog {
+    private static final boolean ASYNC_LOADER_LOG = Boolean.getBoolean("ASYNC_LOADER_LOG");
+    private static final int ASYNC_LOADER_LOG_CAPACITY = Integer.getInteger("ASYNC_LOADER_LOG_CAPACITY", 8192);
+    private static final int ASYNC_LOADER_LOG_BATCH = Integer.getInteger("ASYNC_LOADER_LOG_BATCH", 256);
+    private static final Overflow ASYNC_LOADER_LOG_OVERFLOW = overflowMode(System.getProperty("ASYNC_LOADER_LOG_OVERFLOW", "SYNC"));
+
+    private static final long DRAIN_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    private enum Overflow {
+        SYNC,
+        DROP
+    }
+
+    private enum Level {
+        INFO,
+        DEBUG,
+        STDOUT
+    }
+
+    private record Event(IDeferredMangoLogger logger, Level level, String message, Object[] args) {}
+
+    private static final Queue<Event> QUEUE = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger SIZE = new AtomicInteger();
+    private static final AtomicLong DROPPED = new AtomicLong();
+    private static final ThreadLocal<Boolean> LOGGING = new ThreadLocal<>();
+    private static final Object DRAIN_LOCK = new Object();
+
+    private static volatile Thread drainer;
+    // Set by the drainer before it checks the queue one last time and parks for good
+    private static volatile boolean idle = false;
+
+    private AsyncLog() {}
+
+    static void info(IDeferredMangoLogger logger, String message, Object... args) {
+        submit(new Event(logger, Level.INFO, message, args));
+    }
+
+    static void debug(IDeferredMangoLogger logger, String message, Object... args) {
+        submit(new Event(logger, Level.DEBUG, message, args));
+    }
+
+    /**
+     * For messages about the logging classes themselves, printed with System.out so no logger is involved.
+     */
+    static void stdout(String message) {
+        submit(new Event(null, Level.STDOUT, message, null));
+    }
+
+    /**
+     * Logs everything queued so far on the calling thread.
+     */
+    static void flush() {
+        if (!ASYNC_LOADER_LOG || LOGGING.get() != null) return;
+
+        LOGGING.set(Boolean.TRUE);
+        try {
+            drain(Integer.MAX_VALUE);
+        } finally {
+            LOGGING.remove();
+        }
+    }
+
+    private static void submit(Event event) {
+        if (!ASYNC_LOADER_LOG) {
+            write(event);
+            return;
+        }
+
+        final int size = SIZE.incrementAndGet();
+        if (size > ASYNC_LOADER_LOG_CAPACITY) {
+            SIZE.decrementAndGet();
+            overflow(event);
+            return;
+        }
+
+        QUEUE.offer(event);
+        final var thread = drainer != null ? drainer : startDrainer();
+        // The drainer sleeps for good on an empty queue, wake it when it is about to and again for a full batch.
+        // Offering before reading idle, while it sets idle before its last look, means one of us sees the other
+        if (idle || size >= ASYNC_LOADER_LOG_BATCH) LockSupport.unpark(thread);
+    }
+
+    private static void overflow(Event event) {
+        if (ASYNC_LOADER_LOG_OVERFLOW == Overflow.DROP || Thread.currentThread() == drainer || LOGGING.get() != null) {
+            DROPPED.incrementAndGet();
+            return;
+        }
+
+        LOGGING.set(Boolean.TRUE);
+        try {
+            drain(Integer.MAX_VALUE);
+            write(event);
+        } finally {
+            LOGGING.remove();
+        }
+    }
+
+    private static synchronized Thread startDrainer() {
+        if (drainer != null) return drainer;
+
+        final var thread = new Thread(() -> {
+            while (true) {
+                if (QUEUE.isEmpty()) {
+                    idle = true;
+                    if (QUEUE.isEmpty()) LockSupport.park();
+                    idle = false;
+                } else {
+                    LockSupport.parkNanos(DRAIN_INTERVAL_NANOS);
+                }
+                try {
+                    drain(ASYNC_LOADER_LOG_BATCH);
+                } catch (RuntimeException e) {
+                    System.out.println("Failed to write loader log events cause -> " + e);
+                }
+            }
+        }, "MangoBot-Log");
+        thread.setDaemon(true);
+        drainer = thread;
+        thread.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(AsyncLog::flush, "MangoBot-Log-Flush"));
+        return thread;
+    }
+
+    private static void drain(int max) {
+        final List<Event> batch = new ArrayList<>(Math.min(max, ASYNC_LOADER_LOG_BATCH));
+        final long dropped;
+        // Taking the batch in one go keeps it in queue order, the lock is never held while a logger runs
+        synchronized (DRAIN_LOCK) {
+            Event event;
+            while (batch.size() < max && (event = QUEUE.poll()) != null) {
+                SIZE.decrementAndGet();
+                batch.add(event);
+            }
+            dropped = DROPPED.getAndSet(0);
+        }
+
+        // Let the loop come straight back when more than a batch is waiting
+        if (batch.size() >= max && !QUEUE.isEmpty()) LockSupport.unpark(drainer);
+
+        batch.forEach(AsyncLog::write);
+        if (dropped > 0) System.out.println("Dropped " + dropped + " loader log events, the queue was full");
+    }
+
+    private static Overflow overflowMode(String value) {
+        try {
+            return Overflow.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            System.out.println("Unknown ASYNC_LOADER_LOG_OVERFLOW " + value + ", expected SYNC or DROP, using SYNC");
+            return Overflow.SYNC;
+        }
+    }
+
+    private static void write(Event event) {
+        switch (event.level()) {
+            case INFO -> event.logger().get().info(event.message(), event.args());
+            case DEBUG -> event.logger().get().debug(event.message(), event.args());
+            case STDOUT -> System.out.println(event.message());
+        }
+    }
+}
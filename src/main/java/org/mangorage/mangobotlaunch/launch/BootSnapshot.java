@@ -0,0 +1,268 @@
+package org.mangorage.mangobotlaunch.launch;
+
+import org.mangorage.bootstrap.api.logging.IDeferredMangoLogger;
+import org.mangorage.bootstrap.api.logging.ILoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.module.Configuration;
+import java.lang.module.FindException;
+import java.lang.module.ModuleFinder;
+import java.lang.module.ResolutionException;
+import java.lang.module.ResolvedModule;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * What {@link MangoBotLaunchTarget#setup(ModuleLayer, ModuleLayer, String[])} resolved on a previous boot.
+ * <p>
+ * Holds the root module names, the jars behind them and the readability graph, plus what they were derived from:
+ * the dependency locators, the parent layer and every file in the plugins folder. While none of that changed, the
+ * configuration is resolved again from the known jars only, skipping the locators and the plugin folder scan.
+ */
+final class BootSnapshot {
+    private static final IDeferredMangoLogger LOGGER = ILoggerFactory.getDefault().getWrappedProvider("slf4j", BootSnapshot.class);
+
+    private static final int MAGIC = 0x4D425331; // MBS1
+    private static final int VERSION = 1;
+
+    private record FileStamp(long size, long lastModified) {}
+
+    private final String environment;
+    private final Map<String, FileStamp> pluginFolder;
+    private final Map<String, FileStamp> libraries;
+    private final List<String> plugins;
+    private final Set<String> roots;
+    private final Map<String, Set<String>> graph;
+
+    private BootSnapshot(String environment, Map<String, FileStamp> pluginFolder, Map<String, FileStamp> libraries,
+                         List<String> plugins, Set<String> roots, Map<String, Set<String>> graph) {
+        this.environment = environment;
+        this.pluginFolder = pluginFolder;
+        this.libraries = libraries;
+        this.plugins = plugins;
+        this.roots = roots;
+        this.graph = graph;
+    }
+
+    /**
+     * @param environment describes the dependency locators and parent layer, see {@link #environment(Collection, ModuleLayer)}
+     * @param libraries   the jars passed as the before finder
+     */
+    static BootSnapshot capture(String environment, Path pluginsPath, Collection<Path> libraries, Set<String> roots, Configuration configuration) throws IOException {
+        final Map<String, FileStamp> libraryStamps = new TreeMap<>();
+        for (Path library : libraries) {
+            libraryStamps.put(library.toAbsolutePath().normalize().toString(), stamp(library));
+        }
+
+        final var pluginFolder = pluginsPath.toAbsolutePath().normalize();
+        final List<String> plugins = new ArrayList<>();
+        for (ResolvedModule module : configuration.modules()) {
+            final var location = module.reference().location();
+            if (location.isEmpty() || !"file".equals(location.get().getScheme())) continue;
+
+            final var path = Path.of(location.get()).toAbsolutePath().normalize();
+            if (pluginFolder.equals(path.getParent()) && !libraryStamps.containsKey(path.toString())) {
+                plugins.add(path.toString());
+            }
+        }
+        plugins.sort(null);
+
+        return new BootSnapshot(environment, listFolder(pluginsPath), libraryStamps, plugins, new TreeSet<>(roots), graph(configuration));
+    }
+
+    /**
+     * @return the description of everything outside the plugins folder and libraries the resolution depends on
+     */
+    static String environment(Collection<String> locatorTypes, ModuleLayer parent) {
+        final var builder = new StringBuilder();
+        new TreeSet<>(locatorTypes).forEach(type -> builder.append(type).append(';'));
+        builder.append('|');
+        final Set<String> parentModules = new TreeSet<>();
+        parent.configuration().modules().forEach(module -> parentModules.add(module.reference().descriptor().toNameAndVersion()));
+        parentModules.forEach(module -> builder.append(module).append(';'));
+        return builder.toString();
+    }
+
+    /**
+     * @return the configuration rebuilt from the known jars, or null when any input changed or the graph differs
+     */
+    Configuration resolve(String environment, Path pluginsPath, Configuration parent) {
+        try {
+            if (!this.environment.equals(environment)) return stale("dependency locators or parent layer changed");
+            if (!pluginFolder.equals(listFolder(pluginsPath))) return stale("plugins changed");
+            for (var library : libraries.entrySet()) {
+                if (!library.getValue().equals(stamp(Path.of(library.getKey())))) return stale(library.getKey() + " changed");
+            }
+
+            final var configuration = Configuration.resolve(
+                    ModuleFinder.of(libraries.keySet().stream().map(Path::of).toArray(Path[]::new)),
+                    List.of(parent),
+                    ModuleFinder.of(plugins.stream().map(Path::of).toArray(Path[]::new)),
+                    roots
+            );
+
+            if (!graph.equals(graph(configuration))) return stale("resolved module graph differs");
+            return configuration;
+        } catch (IOException | FindException | ResolutionException e) {
+            return stale(e.toString());
+        }
+    }
+
+    Set<String> getRoots() {
+        return roots;
+    }
+
+    static BootSnapshot load(Path file) {
+        if (!Files.isRegularFile(file)) return null;
+
+        final CRC32 crc = new CRC32();
+        try (var in = new DataInputStream(new CheckedInputStream(new BufferedInputStream(Files.newInputStream(file)), crc))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) return null;
+
+            final var environment = in.readUTF();
+            final var pluginFolder = readStamps(in);
+            final var libraries = readStamps(in);
+            final List<String> plugins = new ArrayList<>(readStrings(in));
+            final Set<String> roots = new TreeSet<>(readStrings(in));
+            final Map<String, Set<String>> graph = new TreeMap<>();
+            final int modules = in.readInt();
+            for (int i = 0; i < modules; i++) {
+                graph.put(in.readUTF(), new TreeSet<>(readStrings(in)));
+            }
+
+            final long expected = crc.getValue();
+            if (in.readLong() != expected) {
+                LOGGER.get().info("Ignoring corrupted boot snapshot " + file);
+                return null;
+            }
+            return new BootSnapshot(environment, pluginFolder, libraries, plugins, roots, graph);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.get().info("Ignoring unreadable boot snapshot " + file + " cause -> " + e);
+            return null;
+        }
+    }
+
+    void save(Path file) {
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            final var temp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+            try {
+                write(temp);
+                try {
+                    Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            LOGGER.get().info("Failed to write boot snapshot " + file + " cause -> " + e);
+        }
+    }
+
+    private void write(Path file) throws IOException {
+        final CRC32 crc = new CRC32();
+        try (var checked = new CheckedOutputStream(new BufferedOutputStream(Files.newOutputStream(file)), crc);
+             var out = new DataOutputStream(checked)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(environment);
+            writeStamps(out, pluginFolder);
+            writeStamps(out, libraries);
+            writeStrings(out, plugins);
+            writeStrings(out, roots);
+            out.writeInt(graph.size());
+            for (var module : graph.entrySet()) {
+                out.writeUTF(module.getKey());
+                writeStrings(out, module.getValue());
+            }
+            out.flush();
+            out.writeLong(crc.getValue());
+        }
+    }
+
+    private static <T> T stale(String reason) {
+        LOGGER.get().info("Boot snapshot is stale, resolving modules again: " + reason);
+        return null;
+    }
+
+    // Every module of the configuration and the names of the modules it reads
+    private static Map<String, Set<String>> graph(Configuration configuration) {
+        final Map<String, Set<String>> graph = new TreeMap<>();
+        configuration.modules().forEach(module -> {
+            final Set<String> reads = new TreeSet<>();
+            module.reads().forEach(read -> reads.add(read.name()));
+            graph.put(module.name(), reads);
+        });
+        return graph;
+    }
+
+    private static Map<String, FileStamp> listFolder(Path folder) throws IOException {
+        final Map<String, FileStamp> stamps = new TreeMap<>();
+        if (!Files.isDirectory(folder)) return stamps;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder)) {
+            for (Path entry : stream) {
+                stamps.put(entry.getFileName().toString(), stamp(entry));
+            }
+        }
+        return stamps;
+    }
+
+    private static FileStamp stamp(Path file) throws IOException {
+        final var attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        return new FileStamp(attributes.size(), attributes.lastModifiedTime().toMillis());
+    }
+
+    private static Map<String, FileStamp> readStamps(DataInputStream in) throws IOException {
+        final int count = in.readInt();
+        final Map<String, FileStamp> stamps = new TreeMap<>();
+        for (int i = 0; i < count; i++) {
+            stamps.put(in.readUTF(), new FileStamp(in.readLong(), in.readLong()));
+        }
+        return stamps;
+    }
+
+    private static void writeStamps(DataOutputStream out, Map<String, FileStamp> stamps) throws IOException {
+        out.writeInt(stamps.size());
+        for (var stamp : stamps.entrySet()) {
+            out.writeUTF(stamp.getKey());
+            out.writeLong(stamp.getValue().size());
+            out.writeLong(stamp.getValue().lastModified());
+        }
+    }
+
+    private static List<String> readStrings(DataInputStream in) throws IOException {
+        final int count = in.readInt();
+        final List<String> strings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            strings.add(in.readUTF());
+        }
+        return strings;
+    }
+
+    private static void writeStrings(DataOutputStream out, Collection<String> strings) throws IOException {
+        out.writeInt(strings.size());
+        for (String string : strings) {
+            out.writeUTF(string);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package org.mangorage.mangobotlaunch.launch;
+
+import org.mangorage.mangobotlaunch.api.metrics.ClassBytesCacheMetrics;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Byte bounded cache of {@link MangoLoaderImpl#getClassBytes(String)} results, by class name.
+ * <p>
+ * Split into segments by name hash, each an access ordered map under its own lock with an equal share of the
+ * budget, evicting its least recently used classes first. Callers always get their own copy, so whatever they do
+ * to the array never reaches the cache.
+ */
+final class ClassBytesCache {
+    private static final int SEGMENTS = 16;
+    // Rough cost of the name, the map node and the array header
+    private static final int ENTRY_OVERHEAD = 96;
+
+    private static final class Segment {
+        private final LinkedHashMap<String, byte[]> entries = new LinkedHashMap<>(64, 0.75f, true);
+        private long bytes = 0;
+    }
+
+    private final long maxBytes;
+    private final long segmentMaxBytes;
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private volatile boolean dropped = false;
+
+    ClassBytesCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+        this.segmentMaxBytes = Math.max(1, maxBytes / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    byte[] get(String cn) {
+        if (dropped) return null;
+
+        final var segment = segment(cn);
+        final byte[] bytes;
+        synchronized (segment) {
+            bytes = segment.entries.get(cn);
+        }
+
+        if (bytes == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return bytes.clone();
+    }
+
+    void put(String cn, byte[] classBytes) {
+        final long weight = weight(classBytes);
+        if (dropped || weight > segmentMaxBytes) return;
+
+        final byte[] copy = classBytes.clone();
+        final var segment = segment(cn);
+        synchronized (segment) {
+            final var previous = segment.entries.put(cn, copy);
+            segment.bytes += weight - (previous != null ? weight(previous) : 0);
+
+            final Iterator<Map.Entry<String, byte[]>> eldest = segment.entries.entrySet().iterator();
+            while (segment.bytes > segmentMaxBytes && eldest.hasNext()) {
+                final var entry = eldest.next();
+                segment.bytes -= weight(entry.getValue());
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * Empties the cache for good, later calls always miss.
+     */
+    void drop() {
+        dropped = true;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.entries.clear();
+                segment.bytes = 0;
+            }
+        }
+    }
+
+    ClassBytesCacheMetrics snapshot() {
+        long entries = 0;
+        long bytes = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                entries += segment.entries.size();
+                bytes += segment.bytes;
+            }
+        }
+        return new ClassBytesCacheMetrics(hits.sum(), misses.sum(), evictions.sum(), entries, bytes, maxBytes);
+    }
+
+    private Segment segment(String cn) {
+        final int h = cn.hashCode();
+        return segments[(h ^ (h >>> 16)) & (SEGMENTS - 1)];
+    }
+
+    private static long weight(byte[] classBytes) {
+        return classBytes.length + (long) ENTRY_OVERHEAD;
+    }
+}
@@ -0,0 +1,125 @@
+package org.mangorage.mangobotlaunch.launch;
+
+import org.mangorage.mangobotlaunch.api.metrics.ClassLoadingMetrics;
+import org.mangorage.mangobotlaunch.api.metrics.ClassLockMetrics;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Makes sure each class is defined once without a monitor per class name, so loading on a virtual thread never pins
+ * its carrier and no lock object outlives the load.
+ * <p>
+ * Names hash to a fixed set of stripes, each a {@link ReentrantLock} guarding the names being defined right now. The
+ * stripe is only held to claim a name or to see it was defined, never while reading or transforming, so a define
+ * that loads its superclass through another stripe cannot deadlock. A thread that finds its name claimed waits on the
+ * stripe until the owner is done and then takes its class, the same outcome the per name monitor gave.
+ */
+final class ClassDefinitionLocks {
+    private static final class Stripe {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition released = lock.newCondition();
+        // Names being defined and the thread defining each
+        private final Map<String, Thread> defining = new HashMap<>();
+        private final LongAdder waits = new LongAdder();
+        private final LongAdder waitNanos = new LongAdder();
+    }
+
+    private final Stripe[] stripes;
+    private final int mask;
+    private final Function<String, Class<?>> loaded;
+    private final LongAdder joined = new LongAdder();
+
+    /**
+     * @param loaded the class already defined under a name, or null
+     */
+    ClassDefinitionLocks(int stripes, Function<String, Class<?>> loaded) {
+        int capacity = 1;
+        while (capacity < stripes && capacity < (1 << 16)) capacity <<= 1;
+        this.stripes = new Stripe[capacity];
+        for (int i = 0; i < capacity; i++) {
+            this.stripes[i] = new Stripe();
+        }
+        this.mask = capacity - 1;
+        this.loaded = loaded;
+    }
+
+    /**
+     * @return the class already defined under cn, or whatever definer returns when this thread gets to define it
+     */
+    Class<?> define(String cn, Supplier<Class<?>> definer) {
+        final var stripe = stripes[index(cn)];
+        final var current = Thread.currentThread();
+        long waited = 0;
+        boolean owner = false;
+
+        if (!stripe.lock.tryLock()) {
+            final long start = System.nanoTime();
+            stripe.lock.lock();
+            waited = System.nanoTime() - start;
+        }
+        try {
+            boolean joining = false;
+            while (true) {
+                final Class<?> c = loaded.apply(cn);
+                if (c != null) return c;
+
+                final var definingThread = stripe.defining.putIfAbsent(cn, current);
+                if (definingThread == null) {
+                    owner = true;
+                    break;
+                }
+                // Asked for again while defining it, the JVM reports the circularity once define gets there
+                if (definingThread == current) break;
+
+                if (!joining) {
+                    joining = true;
+                    joined.increment();
+                }
+                final long start = System.nanoTime();
+                stripe.released.awaitUninterruptibly();
+                waited += System.nanoTime() - start;
+            }
+        } finally {
+            stripe.lock.unlock();
+            if (waited > 0) {
+                stripe.waits.increment();
+                stripe.waitNanos.add(waited);
+            }
+        }
+
+        try {
+            return definer.get();
+        } finally {
+            if (owner) {
+                stripe.lock.lock();
+                try {
+                    stripe.defining.remove(cn);
+                    stripe.released.signalAll();
+                } finally {
+                    stripe.lock.unlock();
+                }
+            }
+        }
+    }
+
+    ClassLockMetrics snapshot() {
+        final List<ClassLoadingMetrics.Timing> waits = new ArrayList<>(stripes.length);
+        for (Stripe stripe : stripes) {
+            waits.add(new ClassLoadingMetrics.Timing(stripe.waits.sum(), stripe.waitNanos.sum()));
+        }
+        return new ClassLockMetrics(waits, joined.sum());
+    }
+
+    private int index(String cn) {
+        final int h = cn.hashCode();
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
@@ -0,0 +1,192 @@
+package org.mangorage.mangobotlaunch.launch;
+
+import org.mangorage.bootstrap.api.logging.IDeferredMangoLogger;
+import org.mangorage.bootstrap.api.logging.ILoggerFactory;
+import org.mangorage.mangobotlaunch.api.metrics.ClassPrefetchMetrics;
+
+import java.io.IOException;
+import java.lang.module.ModuleReader;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Reads the rest of a package ahead of time once its first class is requested.
+ * <p>
+ * Class entries are grouped by package in the order the module lists them, which for jars is the central directory
+ * and so usually the order they sit in the file. When a class misses the buffer its package is queued once, and a
+ * background thread reads every class of it that is not defined yet into a buffer held under a byte budget. Define
+ * takes entries out of the buffer, {@link #peek(String)} leaves them in. Whatever is still buffered when startup
+ * ends is dropped.
+ */
+final class ClassPrefetcher {
+    private static final IDeferredMangoLogger LOGGER = ILoggerFactory.getDefault().getWrappedProvider("slf4j", ClassPrefetcher.class);
+
+    private record Package(LoadedModule module, List<String> classNames) {}
+
+    private final long maxBytes;
+    private final Predicate<String> defined;
+    private final ExecutorService executor;
+
+    // Package to its classes, set once the modules have been listed
+    private volatile Map<String, Package> packages = Map.of();
+    private final Set<String> requested = ConcurrentHashMap.newKeySet();
+    private final Map<String, byte[]> buffer = new ConcurrentHashMap<>();
+    private final AtomicLong bufferedBytes = new AtomicLong();
+    private volatile boolean stopped = false;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder prefetchedPackages = new LongAdder();
+    private final LongAdder prefetchedClasses = new LongAdder();
+    private final LongAdder prefetchedBytes = new LongAdder();
+    private final LongAdder usedBytes = new LongAdder();
+    private final LongAdder skippedBytes = new LongAdder();
+
+    /**
+     * @param defined tells whether a class is already defined, those are not read ahead
+     */
+    ClassPrefetcher(long maxBytes, int threads, Predicate<String> defined) {
+        this.maxBytes = maxBytes;
+        this.defined = defined;
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+            final var thread = new Thread(runnable, "MangoBot-Prefetch");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @param entries every entry of each module, in listing order
+     */
+    void index(Map<LoadedModule, List<String>> entries) {
+        final Map<String, Package> index = new HashMap<>();
+        entries.forEach((module, names) -> {
+            final var owned = module.getModuleReference().descriptor().packages();
+            for (String entry : names) {
+                if (!entry.endsWith(".class")) continue;
+                final int slash = entry.lastIndexOf('/');
+                if (slash < 0) continue;
+
+                final var pkg = entry.substring(0, slash).replace('/', '.');
+                if (!owned.contains(pkg)) continue;
+                index.computeIfAbsent(pkg, k -> new Package(module, new ArrayList<>()))
+                        .classNames().add(entry.substring(0, entry.length() - ".class".length()).replace('/', '.'));
+            }
+        });
+        packages = index;
+    }
+
+    /**
+     * @return the prefetched bytes of the class, removed from the buffer, or null after queueing its package
+     */
+    byte[] take(String cn) {
+        final byte[] bytes = buffer.remove(cn);
+        if (bytes != null) {
+            bufferedBytes.addAndGet(-bytes.length);
+            hits.increment();
+            usedBytes.add(bytes.length);
+            return bytes;
+        }
+
+        misses.increment();
+        request(cn);
+        return null;
+    }
+
+    /**
+     * @return a copy of the prefetched bytes of the class, which stay buffered for define
+     */
+    byte[] peek(String cn) {
+        final byte[] bytes = buffer.get(cn);
+        if (bytes == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return bytes.clone();
+    }
+
+    /**
+     * Drops the buffer and stops reading ahead, reads fall back to the jar from now on.
+     */
+    void stop() {
+        stopped = true;
+        executor.shutdownNow();
+        buffer.clear();
+        bufferedBytes.set(0);
+    }
+
+    ClassPrefetchMetrics snapshot() {
+        return new ClassPrefetchMetrics(hits.sum(), misses.sum(), prefetchedPackages.sum(), prefetchedClasses.sum(),
+                prefetchedBytes.sum(), usedBytes.sum(), bufferedBytes.get(), skippedBytes.sum());
+    }
+
+    private void request(String cn) {
+        if (stopped) return;
+        final int dot = cn.lastIndexOf('.');
+        if (dot < 0) return;
+
+        final var pkg = cn.substring(0, dot);
+        final var target = packages.get(pkg);
+        if (target == null || target.classNames().size() < 2 || !requested.add(pkg)) return;
+
+        try {
+            executor.execute(() -> prefetch(target, cn));
+        } catch (RejectedExecutionException e) {
+            // Stopped in the meantime
+        }
+    }
+
+    // One pass over the package in listing order, the class that triggered it is being read by its caller
+    private void prefetch(Package target, String trigger) {
+        prefetchedPackages.increment();
+        final ModuleReader reader;
+        try {
+            reader = target.module().getModuleReader();
+        } catch (IOException e) {
+            return;
+        }
+
+        for (String cn : target.classNames()) {
+            if (stopped) return;
+            if (cn.equals(trigger) || buffer.containsKey(cn) || defined.test(cn)) continue;
+
+            try {
+                final ByteBuffer bb = reader.read(cn.replace('.', '/').concat(".class")).orElse(null);
+                if (bb == null) continue;
+                try {
+                    final int size = bb.remaining();
+                    if (bufferedBytes.addAndGet(size) > maxBytes) {
+                        bufferedBytes.addAndGet(-size);
+                        skippedBytes.add(size);
+                        continue;
+                    }
+
+                    final byte[] bytes = new byte[size];
+                    bb.get(bytes);
+                    StartupProfiler.classRead(size);
+                    prefetchedClasses.increment();
+                    prefetchedBytes.add(size);
+                    if (buffer.putIfAbsent(cn, bytes) != null) bufferedBytes.addAndGet(-size);
+                    if (stopped) buffer.remove(cn);
+                } finally {
+                    reader.release(bb);
+                }
+            } catch (IOException | RuntimeException e) {
+                LOGGER.get().info("Failed to prefetch " + cn + " cause -> " + e);
+                return;
+            }
+        }
+    }
+}
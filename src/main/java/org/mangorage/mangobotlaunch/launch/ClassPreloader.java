@@ -0,0 +1,177 @@
+package org.mangorage.mangobotlaunch.launch;
+
+import org.mangorage.bootstrap.api.logging.IDeferredMangoLogger;
+import org.mangorage.bootstrap.api.logging.ILoggerFactory;
+
+import java.io.IOException;
+import java.lang.module.ResolvedModule;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records the order classes are defined in on one boot and defines them ahead of time on the next.
+ * <p>
+ * Lists are kept per loader and fingerprint of the resolved modules (name, location, size and last modified time), so
+ * adding or updating a plugin or library starts a new list and saving it deletes the loader's older ones. Replay loads
+ * classes without initializing them, names that no longer exist or fail to link are skipped.
+ */
+final class ClassPreloader {
+    private static final IDeferredMangoLogger LOGGER = ILoggerFactory.getDefault().getWrappedProvider("slf4j", ClassPreloader.class);
+
+    private final Path file;
+    private final String prefix;
+    private final int threads;
+    // Defined classes and when they were defined, sorted by the latter when saved
+    private final Map<String, Long> defined = new ConcurrentHashMap<>();
+    private final AtomicLong order = new AtomicLong();
+    private volatile boolean saved = false;
+
+    /**
+     * @param name names the loader, lists of other loaders in the same directory are left alone
+     */
+    ClassPreloader(Path directory, String name, Set<ResolvedModule> modules, int threads) {
+        this.prefix = name + "-";
+        this.file = directory.resolve(prefix + fingerprint(modules) + ".txt");
+        this.threads = Math.max(1, threads);
+    }
+
+    void defined(String className) {
+        if (!saved) defined.putIfAbsent(className, order.getAndIncrement());
+    }
+
+    /**
+     * Starts defining the classes recorded on the previous boot on background daemon threads.
+     */
+    void replay(ClassLoader loader) {
+        final List<String> classes;
+        try {
+            if (!Files.isRegularFile(file)) return;
+            classes = Files.readAllLines(file, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            LOGGER.get().info("Ignoring unreadable class preload list " + file + " cause -> " + e);
+            return;
+        }
+        if (classes.isEmpty()) return;
+
+        final long start = System.nanoTime();
+        final var cursor = new AtomicInteger();
+        final var remaining = new AtomicInteger(threads);
+        final var stale = new AtomicInteger();
+
+        // Threads pull names in recorded order, so classes mostly come after the ones they depend on
+        final Runnable worker = () -> {
+            int index;
+            while ((index = cursor.getAndIncrement()) < classes.size()) {
+                final var name = classes.get(index);
+                if (name.isBlank()) continue;
+                try {
+                    Class.forName(name, false, loader);
+                } catch (ClassNotFoundException | LinkageError e) {
+                    stale.incrementAndGet();
+                }
+            }
+
+            if (remaining.decrementAndGet() == 0) {
+                LOGGER.get().info("Preloaded " + (classes.size() - stale.get()) + " classes (" + stale.get() + " stale) in "
+                        + (System.nanoTime() - start) / 1_000_000 + " ms");
+            }
+        };
+
+        for (int i = 0; i < threads; i++) {
+            final var thread = new Thread(worker, "MangoBot-Preload-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Writes every class defined so far as the list for the next boot, later calls do nothing.
+     */
+    synchronized void save() {
+        if (saved) return;
+        saved = true;
+
+        final List<Map.Entry<String, Long>> entries = new ArrayList<>(defined.entrySet());
+        if (entries.isEmpty()) return;
+        entries.sort(Map.Entry.comparingByValue());
+
+        final var content = new StringBuilder(entries.size() * 48);
+        entries.forEach(entry -> content.append(entry.getKey()).append('\n'));
+
+        try {
+            Files.createDirectories(file.getParent());
+            final var temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+            try {
+                Files.writeString(temp, content, StandardCharsets.UTF_8);
+                try {
+                    Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            LOGGER.get().info("Failed to write class preload list " + file + " cause -> " + e);
+            return;
+        }
+        deleteOlderLists();
+    }
+
+    // Fingerprints hold no '-', a list whose last one is further along belongs to a loader whose name merely starts alike
+    private void deleteOlderLists() {
+        try (var lists = Files.newDirectoryStream(file.getParent(), prefix + "*.txt")) {
+            for (Path list : lists) {
+                final var name = list.getFileName().toString();
+                if (list.equals(file) || name.lastIndexOf('-') != prefix.length() - 1) continue;
+                Files.deleteIfExists(list);
+            }
+        } catch (IOException e) {
+            LOGGER.get().info("Failed to delete older class preload lists in " + file.getParent() + " cause -> " + e);
+        }
+    }
+
+    private static String fingerprint(Set<ResolvedModule> modules) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        modules.stream()
+                .sorted(Comparator.comparing(ResolvedModule::name))
+                .forEach(module -> {
+                    final var builder = new StringBuilder(module.name());
+                    module.reference().location().ifPresent(location -> builder.append('|').append(describeLocation(location)));
+                    digest.update(builder.append('\n').toString().getBytes(StandardCharsets.UTF_8));
+                });
+        return HexFormat.of().formatHex(digest.digest(), 0, 8);
+    }
+
+    private static String describeLocation(URI location) {
+        if (!"file".equals(location.getScheme())) return location.toString();
+        try {
+            final var attributes = Files.readAttributes(Path.of(location), BasicFileAttributes.class);
+            return location + "@" + attributes.size() + ":" + attributes.lastModifiedTime().toMillis();
+        } catch (IOException | RuntimeException e) {
+            return location.toString();
+        }
+    }
+}
@@ -7,88 +7,185 @@ import org.mangorage.bootstrap.api.transformer.IClassTransformerHistory;
 import org.mangorage.bootstrap.api.transformer.ITransformerResultHistory;
 import org.mangorage.bootstrap.api.transformer.TransformResult;
 import org.mangorage.bootstrap.api.transformer.TransformerFlag;
+import org.mangorage.mangobotlaunch.api.transformer.ITargetedClassTransformer;
 
-import java.util.HashMap;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 public final class ClassTransformers implements IClassTransformerHistory {
 
     private static final IDeferredMangoLogger LOGGER = ILoggerFactory.getDefault().getWrappedProvider("slf4j", ClassTransformers.class);
     private static final boolean DEBUG_CLASS_TRANSFORMING = Boolean.getBoolean("DEBUG_CLASS_TRANSFORMING");
+    // History needs every transformer to actually run, so the cache stays off while debugging
+    private static final boolean CLASS_TRANSFORMER_CACHE = Boolean.getBoolean("CLASS_TRANSFORMER_CACHE") && !DEBUG_CLASS_TRANSFORMING;
+    private static final String CLASS_TRANSFORMER_CACHE_DIR = System.getProperty("CLASS_TRANSFORMER_CACHE_DIR", ".cache/transformers");
+    private static final long CLASS_TRANSFORMER_CACHE_MAX_BYTES = Long.getLong("CLASS_TRANSFORMER_CACHE_MAX_BYTES", 256L * 1024 * 1024);
+
+    private static final long CLASS_TRANSFORMING_HISTORY_MAX_BYTES = Long.getLong("CLASS_TRANSFORMING_HISTORY_MAX_BYTES", 64L * 1024 * 1024);
+    private static final boolean CLASS_TRANSFORMING_HISTORY_COMPRESS = Boolean.getBoolean("CLASS_TRANSFORMING_HISTORY_COMPRESS");
+
+    record TransformerHistoryEntry(Class<?> transformer, String transformerName, TransformerFlag transformerFlag, TransformerHistoryStore.Blob input, TransformerHistoryStore.Blob output, ITransformerResultHistory previous)
+            implements ITransformerResultHistory {
+        @Override
+        public byte[] classData() {
+            return input.bytes();
+        }
 
-    record TransformerHistoryEntry(Class<?> transformer, String transformerName, TransformerFlag transformerFlag, byte[] classData, byte[] transformerResult, ITransformerResultHistory previous)
-            implements ITransformerResultHistory {}
+        @Override
+        public byte[] transformerResult() {
+            return output.bytes();
+        }
+    }
 
     private final List<IClassTransformer> transformers = new CopyOnWriteArrayList<>();
-    private final Map<String, List<ITransformerResultHistory>> transformerHistoryCache = DEBUG_CLASS_TRANSFORMING ? new HashMap<>() : null;
-
-    ClassTransformers() {}
+    private final List<TransformerIndex.Registration> registrations = new ArrayList<>();
+    private volatile TransformerIndex index = new TransformerIndex(List.of());
+    private final TransformerHistoryStore transformerHistory = DEBUG_CLASS_TRANSFORMING
+            ? new TransformerHistoryStore(CLASS_TRANSFORMING_HISTORY_MAX_BYTES, CLASS_TRANSFORMING_HISTORY_COMPRESS)
+            : null;
+    private final TransformerCache transformerCache = CLASS_TRANSFORMER_CACHE
+            ? new TransformerCache(Path.of(CLASS_TRANSFORMER_CACHE_DIR), CLASS_TRANSFORMER_CACHE_MAX_BYTES)
+            : null;
+
+    private final LoaderMetrics metrics;
+
+    ClassTransformers(LoaderMetrics metrics) {
+        this.metrics = metrics;
+    }
 
     void add(IClassTransformer transformer) {
+        final var targets = transformer instanceof ITargetedClassTransformer targeted ? targeted.getTargets() : null;
+        synchronized (registrations) {
+            registrations.add(new TransformerIndex.Registration(transformer, targets));
+            index = new TransformerIndex(registrations);
+        }
         transformers.add(transformer);
+        if (transformerCache != null)
+            transformerCache.setTransformers(transformers);
         LOGGER.get().info("Added transformer: {}", transformer.getName());
     }
 
+    /**
+     * Drops every transformer provided by a module of layer, for plugin layers that are being unloaded.
+     */
+    void removeFrom(ModuleLayer layer) {
+        synchronized (registrations) {
+            if (!registrations.removeIf(registration -> registration.transformer().getClass().getModule().getLayer() == layer)) return;
+            index = new TransformerIndex(registrations);
+        }
+        transformers.removeIf(transformer -> transformer.getClass().getModule().getLayer() == layer);
+        if (transformerCache != null)
+            transformerCache.setTransformers(transformers);
+    }
+
+    /**
+     * @return false when {@link #transform(String, byte[])} would hand the class back without running anything
+     */
+    boolean hasTransformers(String name) {
+        if (name == null || name.contains("MangoLogger") || name.contains("slf4j")) return false;
+        final var index = this.index;
+        return !index.isEmpty() && !index.getTransformers(name).isEmpty();
+    }
+
     byte[] transform(String name, byte[] classData) {
         if (name == null || name.contains("MangoLogger") || name.contains("slf4j")) {
-            System.out.printf("Skipping transformation for %s to avoid potential logging issues%n", name);
+            AsyncLog.stdout("Skipping transformation for " + name + " to avoid potential logging issues");
             return classData;
         }
 
+        final var index = this.index;
+        if (index.isEmpty()) {
+            if (DEBUG_CLASS_TRANSFORMING)
+                AsyncLog.debug(LOGGER, "No transformers registered for class: {}", name);
+            return classData;
+        }
 
-        final var logger = LOGGER.get(); // single reference at the top
-
-        if (transformers.isEmpty()) {
+        final var candidates = index.getTransformers(name);
+        if (candidates.isEmpty()) {
             if (DEBUG_CLASS_TRANSFORMING)
-                logger.debug("No transformers registered for class: {}", name);
+                AsyncLog.debug(LOGGER, "No transformers target class: {}", name);
             return classData;
         }
 
+        final Path cacheFile = transformerCache != null ? transformerCache.locate(name, classData) : null;
+        if (cacheFile != null) {
+            final var cached = transformerCache.get(cacheFile);
+            if (cached != null) {
+                if (!cached.rewritten()) return classData;
+                AsyncLog.info(LOGGER, "Class {} transformed by {} (cached)", name, cached.transformerName());
+                return cached.classData();
+            }
+        }
+
         ITransformerResultHistory previous = null;
-        List<ITransformerResultHistory> historyList = DEBUG_CLASS_TRANSFORMING
-                ? transformerHistoryCache.computeIfAbsent(name, k -> new CopyOnWriteArrayList<>())
-                : null;
 
-        for (IClassTransformer transformer : transformers) {
+        for (int i = 0; i < candidates.size(); i++) {
+            final int groupEnd = TransformerPipeline.groupEnd(candidates, i);
+            if (groupEnd - i > 1) {
+                final var result = TransformerPipeline.run(name, classData, candidates.subList(i, groupEnd), DEBUG_CLASS_TRANSFORMING, metrics);
+                i = groupEnd - 1;
+
+                if (DEBUG_CLASS_TRANSFORMING) {
+                    for (TransformerPipeline.Stage stage : result.stages()) {
+                        previous = recordHistory(name, stage.transformer(), stage.flag(), stage.classData(), stage.result(), previous);
+                    }
+                    AsyncLog.debug(LOGGER, "Transformer history recorded for {} using pipeline of {} transformers", name, result.stages().size());
+                }
+
+                if (result.flag() != TransformerFlag.NO_REWRITE) {
+                    AsyncLog.info(LOGGER, "Class {} transformed by {}", name, result.transformerNames());
+                    if (cacheFile != null)
+                        transformerCache.put(cacheFile, new TransformerCache.Entry(result.transformerNames(), result.classData()));
+                    return result.classData();
+                }
+                continue;
+            }
+
+            final var transformer = candidates.get(i);
+            final long start = metrics != null ? System.nanoTime() : 0;
             TransformResult result = transformer.transform(name, classData);
+            if (metrics != null) metrics.transformed(transformer.getName(), name, result.flag() != TransformerFlag.NO_REWRITE, start);
 
             if (DEBUG_CLASS_TRANSFORMING) {
-                TransformerHistoryEntry entry = new TransformerHistoryEntry(
-                        transformer.getClass(),
-                        transformer.getName(),
-                        result.flag(),
-                        classData,
-                        result.classData(),
-                        previous
-                );
-
-                historyList.add(entry);
-                previous = entry;
+                previous = recordHistory(name, transformer, result.flag(), classData, result.classData(), previous);
 
                 if (DEBUG_CLASS_TRANSFORMING)
-                    logger.debug("Transformer history recorded for {} using {}", name, transformer.getName());
+                    AsyncLog.debug(LOGGER, "Transformer history recorded for {} using {}", name, transformer.getName());
             }
 
             if (result.flag() != TransformerFlag.NO_REWRITE) {
-                logger.info("Class {} transformed by {}", name, transformer.getName());
+                AsyncLog.info(LOGGER, "Class {} transformed by {}", name, transformer.getName());
+                if (cacheFile != null)
+                    transformerCache.put(cacheFile, new TransformerCache.Entry(transformer.getName(), result.classData()));
                 return result.classData();
             }
         }
 
+        if (cacheFile != null)
+            transformerCache.put(cacheFile, new TransformerCache.Entry(null, null));
+
         if (DEBUG_CLASS_TRANSFORMING)
-            logger.debug("No transformation applied to class: {}", name);
+            AsyncLog.debug(LOGGER, "No transformation applied to class: {}", name);
         return classData;
     }
 
 
 
+    private ITransformerResultHistory recordHistory(String name, IClassTransformer transformer, TransformerFlag flag, byte[] classData, byte[] result, ITransformerResultHistory previous) {
+        final var input = transformerHistory.intern(classData);
+        final var output = result == null ? input : transformerHistory.intern(result);
+        final var entry = new TransformerHistoryEntry(transformer.getClass(), transformer.getName(), flag, input, output, previous);
+        transformerHistory.add(name, entry, input, output);
+        return entry;
+    }
+
     @Override
     public List<ITransformerResultHistory> getHistory(String className) {
-        if (!DEBUG_CLASS_TRANSFORMING || transformerHistoryCache == null) {
+        if (!DEBUG_CLASS_TRANSFORMING || transformerHistory == null) {
             return List.of();
         }
-        return transformerHistoryCache.getOrDefault(className, List.of());
+        return transformerHistory.get(className);
     }
 }
@@ -0,0 +1,89 @@
+package org.mangorage.mangobotlaunch.launch;
+
+import org.mangorage.bootstrap.api.logging.IDeferredMangoLogger;
+import org.mangorage.bootstrap.api.logging.ILoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ServiceLoader;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Instantiates service providers and runs startup queries, on a pool when -DCONCURRENT_STARTUP=true and on the
+ * calling thread otherwise. Results always come back in input order, so whatever is merged from them is the same
+ * either way. Tasks run with the caller's context class loader.
+ */
+final class ConcurrentStartup {
+    private static final IDeferredMangoLogger LOGGER = ILoggerFactory.getDefault().getWrappedProvider("slf4j", ConcurrentStartup.class);
+    private static final boolean CONCURRENT_STARTUP = Boolean.getBoolean("CONCURRENT_STARTUP");
+    private static final int CONCURRENT_STARTUP_THREADS = Integer.getInteger("CONCURRENT_STARTUP_THREADS", Runtime.getRuntime().availableProcessors());
+
+    private ConcurrentStartup() {}
+
+    /**
+     * Discovers providers on the calling thread (ServiceLoader is not thread-safe) and logs how long each took to instantiate.
+     */
+    static <S> List<S> instantiate(Stream<ServiceLoader.Provider<S>> providers) {
+        return map(providers.toList(), provider -> {
+            final long start = System.nanoTime();
+            final S instance = provider.get();
+            AsyncLog.info(LOGGER, "Instantiated " + provider.type().getName() + " in " + (System.nanoTime() - start) / 1_000 + "us");
+            return instance;
+        });
+    }
+
+    /**
+     * @return function applied to every item, in the order of items
+     */
+    static <T, R> List<R> map(List<T> items, Function<? super T, ? extends R> function) {
+        final List<R> results = new ArrayList<>(items.size());
+        if (!CONCURRENT_STARTUP || items.size() < 2) {
+            for (T item : items) {
+                results.add(function.apply(item));
+            }
+            return results;
+        }
+
+        final var contextLoader = Thread.currentThread().getContextClassLoader();
+        final ForkJoinPool pool = new ForkJoinPool(Math.max(1, Math.min(CONCURRENT_STARTUP_THREADS, items.size())));
+        try {
+            final List<Future<R>> futures = items.stream()
+                    .<Future<R>>map(item -> pool.submit(() -> {
+                        final var thread = Thread.currentThread();
+                        final var previous = thread.getContextClassLoader();
+                        thread.setContextClassLoader(contextLoader);
+                        try {
+                            return function.apply(item);
+                        } finally {
+                            thread.setContextClassLoader(previous);
+                        }
+                    }))
+                    .toList();
+
+            for (Future<R> future : futures) {
+                results.add(await(future));
+            }
+            return results;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted during concurrent startup", e);
+        } catch (ExecutionException e) {
+            final var cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) throw runtimeException;
+            if (cause instanceof Error error) throw error;
+            throw new IllegalStateException(cause);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package org.mangorage.mangobotlaunch.launch;
+
+import java.util.Collection;
+
+/**
+ * Bloom filter over the entry names of a module, about 1% false positives at 10 bits and 7 probes per entry.
+ * A miss means the module's reader would not find the name, so it does not need to be opened.
+ * Directory entries are added with and without their trailing slash, like ModuleReader.find resolves them.
+ */
+final class EntryFilter {
+    private static final int PROBES = 7;
+
+    private final long[] bits;
+    private final int mask;
+
+    private EntryFilter(int bitCount) {
+        this.bits = new long[bitCount >>> 6];
+        this.mask = bitCount - 1;
+    }
+
+    static EntryFilter of(Collection<String> entries) {
+        int bitCount = 64;
+        while (bitCount < entries.size() * 10L && bitCount < (1 << 30)) bitCount <<= 1;
+
+        final var filter = new EntryFilter(bitCount);
+        for (String entry : entries) {
+            filter.add(entry);
+            if (entry.length() > 1 && entry.endsWith("/")) filter.add(entry.substring(0, entry.length() - 1));
+        }
+        return filter;
+    }
+
+    boolean mightContain(String name) {
+        final int h1 = name.hashCode();
+        final int h2 = secondHash(name);
+        for (int i = 0; i < PROBES; i++) {
+            final int bit = (h1 + i * h2) & mask;
+            if ((bits[bit >>> 6] & (1L << bit)) == 0) return false;
+        }
+        return true;
+    }
+
+    private void add(String name) {
+        final int h1 = name.hashCode();
+        final int h2 = secondHash(name);
+        for (int i = 0; i < PROBES; i++) {
+            final int bit = (h1 + i * h2) & mask;
+            bits[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    // FNV-1a, odd so the probes of one name never collapse onto a single bit
+    private static int secondHash(String name) {
+        int h = 0x811C9DC5;
+        for (int i = 0; i < name.length(); i++) {
+            h = (h ^ name.charAt(i)) * 0x01000193;
+        }
+        return h | 1;
+    }
+}
@@ -1,31 +1,109 @@
 package org.mangorage.mangobotlaunch.launch;
 
 import java.io.IOException;
+import java.lang.module.ModuleDescriptor;
 import java.lang.module.ModuleReader;
 import java.lang.module.ModuleReference;
 import java.net.URI;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
 
 public final class LoadedModule {
+    private static final boolean MAPPED_MODULE_READER = Boolean.getBoolean("MAPPED_MODULE_READER");
+
     private final List<LoadedModule> children = new ArrayList<>();
+    // This module then its children, transitively, see resolveSearchOrder
+    private volatile List<LoadedModule> searchOrder = List.of(this);
+    // Null until the module has been listed, every name might be present then
+    private volatile EntryFilter entryFilter;
 
     private final ModuleReference moduleReference;
+    private final boolean fullyOpen;
+    private final Set<String> openPackages;
+
+    // One reader per module, opened on first use and shared by every thread (jar readers are thread-safe)
+    private final Object readerLock = new Object();
+    private final LongAdder readerReuses = new LongAdder();
+    private volatile ModuleReader moduleReader;
+    private volatile boolean closed = false;
+    private final boolean mappable;
 
-    LoadedModule(ModuleReference moduleReference) {
+    /**
+     * @param mappable whether the jar may be memory mapped, never for jars that can be replaced while open
+     */
+    LoadedModule(ModuleReference moduleReference, boolean mappable) {
         this.moduleReference = moduleReference;
+        this.mappable = mappable;
+
+        final ModuleDescriptor descriptor = moduleReference.descriptor();
+        this.fullyOpen = descriptor.isOpen() || descriptor.isAutomatic();
+        this.openPackages = fullyOpen ? Set.of() : descriptor.opens().stream()
+                .filter(opens -> !opens.isQualified())
+                .map(ModuleDescriptor.Opens::source)
+                .collect(Collectors.toUnmodifiableSet());
     }
 
     ModuleReference getModuleReference() {
         return moduleReference;
     }
 
-    ModuleReader getModuleReader() {
-        try {
-            return moduleReference.open();
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+    /**
+     * @throws IOException when the reader fails to open or the module has been closed, callers treat both as a miss
+     */
+    ModuleReader getModuleReader() throws IOException {
+        ModuleReader reader = moduleReader;
+        if (reader != null) {
+            readerReuses.increment();
+            return reader;
+        }
+
+        synchronized (readerLock) {
+            if (closed) throw new IOException("Module " + name() + " has been closed");
+            if (moduleReader == null) {
+                moduleReader = openReader();
+            } else {
+                readerReuses.increment();
+            }
+            return moduleReader;
+        }
+    }
+
+    private ModuleReader openReader() throws IOException {
+        StartupProfiler.moduleReaderOpened();
+        if (MAPPED_MODULE_READER && mappable) {
+            final var location = moduleReference.location().orElse(null);
+            if (location != null && "file".equals(location.getScheme()) && location.getPath().endsWith(".jar")) {
+                final var reader = MappedJarReader.open(Path.of(location));
+                if (reader != null) return reader;
+            }
+        }
+        return moduleReference.open();
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    boolean isReaderOpen() {
+        return moduleReader != null;
+    }
+
+    long getReaderReuseCount() {
+        return readerReuses.sum();
+    }
+
+    void close() throws IOException {
+        synchronized (readerLock) {
+            closed = true;
+            final var reader = moduleReader;
+            moduleReader = null;
+            if (reader != null) reader.close();
         }
     }
 
@@ -33,18 +111,56 @@ public final class LoadedModule {
         this.children.add(module);
     }
 
+    List<LoadedModule> getChildren() {
+        return children;
+    }
+
+    /**
+     * Flattens this module and its children, depth first in the order they were added, into the list
+     * {@link #find(String)} searches. Every module appears once, so cycles end at the first repeat.
+     * Must be called again once children are added.
+     */
+    void resolveSearchOrder() {
+        final Set<LoadedModule> order = new LinkedHashSet<>();
+        collect(this, order);
+        searchOrder = List.copyOf(order);
+    }
+
+    private static void collect(LoadedModule module, Set<LoadedModule> order) {
+        if (!order.add(module)) return;
+        for (LoadedModule child : module.children) {
+            collect(child, order);
+        }
+    }
+
+    List<LoadedModule> getSearchOrder() {
+        return searchOrder;
+    }
+
+    void setEntryFilter(EntryFilter entryFilter) {
+        this.entryFilter = entryFilter;
+    }
+
+    private boolean mightContain(String name) {
+        final var filter = entryFilter;
+        return filter == null || filter.mightContain(name);
+    }
+
+    boolean isOpen(String pn) {
+        if (pn.isEmpty()) return true; // Open if its well, root...
+        return fullyOpen || openPackages.contains(pn);
+    }
+
     String name() {
         return getModuleReference().descriptor().name();
     }
 
     public Optional<URI> find(String name) throws IOException {
-        final var optional = getModuleReader().find(name);
-        if (optional.isPresent()) return optional;
-
-        for (LoadedModule child : children) {
-            final var optionalChild = child.getModuleReader().find(name);
-            if (optionalChild.isPresent())
-                return optionalChild;
+        for (LoadedModule module : searchOrder) {
+            // Skips closed modules and those that cannot hold the name without opening their reader
+            if (module.closed || !module.mightContain(name)) continue;
+            final var optional = module.getModuleReader().find(name);
+            if (optional.isPresent()) return optional;
         }
 
         return Optional.empty();
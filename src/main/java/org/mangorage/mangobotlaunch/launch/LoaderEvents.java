@@ -0,0 +1,117 @@
+package org.mangorage.mangobotlaunch.launch;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR events emitted by {@link LoaderMetrics}, the time is measured by the loader and stored as a field.
+ * <p>
+ * jdk.jfr is optional, on a runtime without it the methods here do nothing and the event classes are never loaded.
+ */
+final class LoaderEvents {
+    private static final boolean AVAILABLE = isAvailable();
+
+    private LoaderEvents() {}
+
+    static void moduleRead(String module, String className, int size, long time) {
+        if (!AVAILABLE) return;
+        final var event = new ModuleRead();
+        if (event.isEnabled()) {
+            event.module = module;
+            event.className = className;
+            event.size = size;
+            event.time = time;
+            event.commit();
+        }
+    }
+
+    static void transformed(String transformer, String className, boolean rewritten, long time) {
+        if (!AVAILABLE) return;
+        final var event = new ClassTransform();
+        if (event.isEnabled()) {
+            event.transformer = transformer;
+            event.className = className;
+            event.rewritten = rewritten;
+            event.time = time;
+            event.commit();
+        }
+    }
+
+    static void defined(String module, String className, long time) {
+        if (!AVAILABLE) return;
+        final var event = new ClassDefine();
+        if (event.isEnabled()) {
+            event.module = module;
+            event.className = className;
+            event.time = time;
+            event.commit();
+        }
+    }
+
+    // Present in our layer or a parent, and read by us, which requires static only makes true when it was resolved
+    private static boolean isAvailable() {
+        final var self = LoaderEvents.class.getModule();
+        final var layer = self.getLayer() != null ? self.getLayer() : ModuleLayer.boot();
+        return layer.findModule("jdk.jfr").filter(self::canRead).isPresent();
+    }
+
+    @Name("org.mangorage.mangobotlaunch.ModuleRead")
+    @Label("Module Class Read")
+    @Category({"MangoBot", "Class Loading"})
+    @StackTrace(false)
+    static final class ModuleRead extends Event {
+        @Label("Module")
+        String module;
+
+        @Label("Class")
+        String className;
+
+        @Label("Size")
+        @DataAmount
+        long size;
+
+        @Label("Time")
+        @Timespan
+        long time;
+    }
+
+    @Name("org.mangorage.mangobotlaunch.ClassTransform")
+    @Label("Class Transform")
+    @Category({"MangoBot", "Class Loading"})
+    @StackTrace(false)
+    static final class ClassTransform extends Event {
+        @Label("Transformer")
+        String transformer;
+
+        @Label("Class")
+        String className;
+
+        @Label("Rewritten")
+        boolean rewritten;
+
+        @Label("Time")
+        @Timespan
+        long time;
+    }
+
+    @Name("org.mangorage.mangobotlaunch.ClassDefine")
+    @Label("Class Define")
+    @Category({"MangoBot", "Class Loading"})
+    @StackTrace(false)
+    static final class ClassDefine extends Event {
+        @Label("Module")
+        String module;
+
+        @Label("Class")
+        String className;
+
+        @Label("Time")
+        @Timespan
+        long time;
+    }
+}
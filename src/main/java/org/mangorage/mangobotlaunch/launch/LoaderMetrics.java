@@ -0,0 +1,168 @@
+package org.mangorage.mangobotlaunch.launch;
+
+import org.mangorage.bootstrap.api.logging.IDeferredMangoLogger;
+import org.mangorage.bootstrap.api.logging.ILoggerFactory;
+import org.mangorage.mangobotlaunch.api.metrics.ClassLoadingMetrics;
+import org.mangorage.mangobotlaunch.api.metrics.ClassLoadingMetricsMXBean;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+/**
+ * Counters and JFR events for {@link MangoLoaderImpl} and {@link ClassTransformers}.
+ * Only created when metrics are enabled, callers skip all timing when they hold none.
+ */
+final class LoaderMetrics implements ClassLoadingMetricsMXBean {
+    private static final IDeferredMangoLogger LOGGER = ILoggerFactory.getDefault().getWrappedProvider("slf4j", LoaderMetrics.class);
+    // Which metrics hold each name, guards the MBean server calls too
+    private static final Map<ObjectName, LoaderMetrics> REGISTERED = new HashMap<>();
+
+    private static final class Timer {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+
+        private void add(long time) {
+            count.increment();
+            nanos.add(time);
+        }
+
+        private ClassLoadingMetrics.Timing snapshot() {
+            return new ClassLoadingMetrics.Timing(count.sum(), nanos.sum());
+        }
+    }
+
+    private final Map<String, Timer> moduleReads = new ConcurrentHashMap<>();
+    private final Map<String, Timer> transformers = new ConcurrentHashMap<>();
+    private final Timer defines = new Timer();
+    private final LongAdder parentDelegations = new LongAdder();
+    private final LongAdder resourceHits = new LongAdder();
+    private final LongAdder resourceMisses = new LongAdder();
+
+    private ObjectName objectName;
+
+    void moduleRead(String module, String className, int size, long start) {
+        final long time = System.nanoTime() - start;
+        moduleReads.computeIfAbsent(module, k -> new Timer()).add(time);
+
+        LoaderEvents.moduleRead(module, className, size, time);
+    }
+
+    void transformed(String transformer, String className, boolean rewritten, long start) {
+        final long time = System.nanoTime() - start;
+        transformers.computeIfAbsent(transformer, k -> new Timer()).add(time);
+
+        LoaderEvents.transformed(transformer, className, rewritten, time);
+    }
+
+    void defined(String module, String className, long start) {
+        final long time = System.nanoTime() - start;
+        defines.add(time);
+
+        LoaderEvents.defined(module, className, time);
+    }
+
+    void parentDelegation() {
+        parentDelegations.increment();
+    }
+
+    void resourceLookup(boolean hit) {
+        (hit ? resourceHits : resourceMisses).increment();
+    }
+
+    ClassLoadingMetrics snapshot() {
+        final Map<String, ClassLoadingMetrics.Timing> reads = new HashMap<>();
+        moduleReads.forEach((module, timer) -> reads.put(module, timer.snapshot()));
+        final Map<String, ClassLoadingMetrics.Timing> transforms = new HashMap<>();
+        transformers.forEach((transformer, timer) -> transforms.put(transformer, timer.snapshot()));
+        return new ClassLoadingMetrics(reads, transforms, defines.snapshot(), parentDelegations.sum(), resourceHits.sum(), resourceMisses.sum());
+    }
+
+    /**
+     * Registers as org.mangorage.mangobotlaunch:type=ClassLoading,name=&lt;name&gt;, replacing whatever holds that name,
+     * so a reloaded plugin's loader takes over the name of the one it replaces.
+     */
+    void register(String name) {
+        try {
+            final var objectName = new ObjectName("org.mangorage.mangobotlaunch:type=ClassLoading,name=" + name);
+            synchronized (REGISTERED) {
+                final var server = ManagementFactory.getPlatformMBeanServer();
+                if (REGISTERED.remove(objectName) != null && server.isRegistered(objectName)) server.unregisterMBean(objectName);
+                server.registerMBean(this, objectName);
+                REGISTERED.put(objectName, this);
+                this.objectName = objectName;
+            }
+        } catch (JMException | RuntimeException e) {
+            LOGGER.get().info("Failed to register class loading metrics MBean cause -> " + e);
+        }
+    }
+
+    void unregister() {
+        synchronized (REGISTERED) {
+            if (objectName == null) return;
+            // Only while the name is still ours, the loader of a reload may hold it by now
+            if (REGISTERED.remove(objectName, this)) {
+                try {
+                    ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+                } catch (JMException ignored) {}
+            }
+            objectName = null;
+        }
+    }
+
+    @Override
+    public Map<String, Long> getModuleReadCounts() {
+        return collect(moduleReads, timer -> timer.count.sum());
+    }
+
+    @Override
+    public Map<String, Long> getModuleReadNanos() {
+        return collect(moduleReads, timer -> timer.nanos.sum());
+    }
+
+    @Override
+    public Map<String, Long> getTransformerCounts() {
+        return collect(transformers, timer -> timer.count.sum());
+    }
+
+    @Override
+    public Map<String, Long> getTransformerNanos() {
+        return collect(transformers, timer -> timer.nanos.sum());
+    }
+
+    @Override
+    public long getDefineCount() {
+        return defines.count.sum();
+    }
+
+    @Override
+    public long getDefineNanos() {
+        return defines.nanos.sum();
+    }
+
+    @Override
+    public long getParentDelegationCount() {
+        return parentDelegations.sum();
+    }
+
+    @Override
+    public long getResourceHitCount() {
+        return resourceHits.sum();
+    }
+
+    @Override
+    public long getResourceMissCount() {
+        return resourceMisses.sum();
+    }
+
+    private static Map<String, Long> collect(Map<String, Timer> timers, ToLongFunction<Timer> value) {
+        final Map<String, Long> result = new HashMap<>();
+        timers.forEach((name, timer) -> result.put(name, value.applyAsLong(timer)));
+        return result;
+    }
+}
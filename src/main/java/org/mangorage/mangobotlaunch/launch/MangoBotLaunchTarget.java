@@ -7,6 +7,8 @@ import org.mangorage.bootstrap.api.launch.ILaunchTargetEntrypoint;
 import org.mangorage.bootstrap.api.logging.IDeferredMangoLogger;
 import org.mangorage.bootstrap.api.logging.ILoggerFactory;
 import org.mangorage.mangobotlaunch.util.Util;
+
+import java.io.IOException;
 import java.lang.module.Configuration;
 import java.lang.module.ModuleFinder;
 import java.nio.file.Path;
@@ -21,6 +23,15 @@ import java.util.Set;
 
 public final class MangoBotLaunchTarget implements ILaunchTarget {
     private static final IDeferredMangoLogger LOGGER = ILoggerFactory.getDefault().getWrappedProvider("slf4j", MangoBotLaunchTarget.class);
+    private static final boolean FAST_BOOT = Boolean.getBoolean("FAST_BOOT");
+    private static final String FAST_BOOT_SNAPSHOT = System.getProperty("FAST_BOOT_SNAPSHOT", ".cache/boot-snapshot.bin");
+    private static final boolean PLUGIN_LAYERS = Boolean.getBoolean("PLUGIN_LAYERS");
+    private static final boolean PLUGIN_HOT_RELOAD = Boolean.getBoolean("PLUGIN_HOT_RELOAD");
+    private static final long PLUGIN_RELOAD_DEBOUNCE_MS = Long.getLong("PLUGIN_RELOAD_DEBOUNCE_MS", 500);
+    private static final boolean CLASS_BYTES_CACHE_KEEP = Boolean.getBoolean("CLASS_BYTES_CACHE_KEEP");
+
+    private MangoLoaderImpl loader;
+    private PluginLayers pluginLayers;
 
     @Override
     public String getId() {
@@ -29,88 +40,222 @@ public final class MangoBotLaunchTarget implements ILaunchTarget {
 
     @Override
     public ModuleLayer setup(ModuleLayer bootstrapLayer, ModuleLayer parent, String[] args) {
+        try (var phase = StartupProfiler.phase("setup")) {
+            return setup(bootstrapLayer, parent);
+        }
+    }
+
+    private ModuleLayer setup(ModuleLayer bootstrapLayer, ModuleLayer parent) {
         final var pluginsPath = Path.of("plugins");
 
-        List<IDependencyLocator> dependencyLocators = ServiceLoader.load(bootstrapLayer, IDependencyLocator.class)
-                .stream()
-                .map(ServiceLoader.Provider::get)
-                .toList();
+        if (PLUGIN_LAYERS) {
+            return setupPluginLayers(bootstrapLayer, parent, pluginsPath);
+        }
+
+        Configuration moduleCfg = null;
+        String environment = null;
+        if (FAST_BOOT) {
+            try (var phase = StartupProfiler.phase("bootSnapshot.resolve")) {
+                environment = BootSnapshot.environment(
+                        ServiceLoader.load(bootstrapLayer, IDependencyLocator.class)
+                                .stream()
+                                .map(provider -> provider.type().getName())
+                                .toList(),
+                        parent
+                );
+                final var snapshot = BootSnapshot.load(Path.of(FAST_BOOT_SNAPSHOT));
+                if (snapshot != null) {
+                    moduleCfg = snapshot.resolve(environment, pluginsPath, parent.configuration());
+                    if (moduleCfg != null) LOGGER.get().info("Fast boot, reusing resolved configuration of " + snapshot.getRoots().size() + " modules");
+                }
+            }
+        }
+
+        if (moduleCfg == null) {
+            moduleCfg = resolveConfiguration(bootstrapLayer, parent, pluginsPath, environment);
+        }
+
+        final MangoLoaderImpl moduleCL;
+        final ModuleLayer.Controller moduleLayerController;
+        try (var phase = StartupProfiler.phase("layer.define")) {
+            moduleCL = new MangoLoaderImpl(moduleCfg.modules(), Thread.currentThread().getContextClassLoader());
+            moduleLayerController = ModuleLayer.defineModules(moduleCfg, List.of(parent), s -> moduleCL);
+        }
+        final var moduleLayer = moduleLayerController.layer();
+
+        Thread.currentThread().setContextClassLoader(moduleCL);
+
+        moduleCL.load(moduleLayer, moduleLayerController);
+        loader = moduleCL;
+
+        // Allow bootstrap to see the moduleLayer!
+        return moduleLayer;
+    }
+
+    /**
+     * Libraries in a base layer and a child layer per plugin, see {@link PluginLayers}. Boot snapshots are not used.
+     */
+    private ModuleLayer setupPluginLayers(ModuleLayer bootstrapLayer, ModuleLayer parent, Path pluginsPath) {
+        final var finalDependencies = locateDependencies(bootstrapLayer);
+
+        AsyncLog.info(LOGGER, "----------------------------------------------");
+        AsyncLog.info(LOGGER, "Library Info");
+        AsyncLog.info(LOGGER, "----------------------------------------------");
+        finalDependencies.forEach((module, result) -> {
+            AsyncLog.info(LOGGER, "Module -> " + module + " Jar -> " + result.resolveJar() + " Name -> " + result.getName() + " Origin -> " + result.getModuleNameOrigin());
+        });
+        AsyncLog.info(LOGGER, "----------------------------------------------");
+
+        try (var phase = StartupProfiler.phase("pluginLayers.create")) {
+            pluginLayers = PluginLayers.create(
+                    parent,
+                    finalDependencies.values().stream().map(IDependency::resolveJar).toList(),
+                    finalDependencies.keySet(),
+                    pluginsPath
+            );
+        }
+        pluginLayers.register();
+
+        if (PLUGIN_HOT_RELOAD) {
+            try {
+                pluginLayers.watch(PLUGIN_RELOAD_DEBOUNCE_MS);
+            } catch (IOException e) {
+                LOGGER.get().info("Failed to watch " + pluginsPath + " for plugin changes cause -> " + e);
+            }
+        }
+
+        loader = pluginLayers.getBaseLoader();
+        Thread.currentThread().setContextClassLoader(loader);
+
+        return pluginLayers.getLayer();
+    }
+
+    private Map<String, IDependency> locateDependencies(ModuleLayer bootstrapLayer) {
+        final List<IDependencyLocator> dependencyLocators;
+        try (var phase = StartupProfiler.phase("locators.discover")) {
+            dependencyLocators = ConcurrentStartup.instantiate(ServiceLoader.load(bootstrapLayer, IDependencyLocator.class).stream());
+        }
 
         final Map<String, List<IDependency>> dependencies = new HashMap<>();
 
         dependencyLocators.forEach(locator -> {
             if (locator.isValidLocatorFor(getId())) {
-                final var foundDependencies = locator.locate();
-                foundDependencies.forEach(dependency -> {
-                    dependencies.computeIfAbsent(dependency.getName(), k -> new ArrayList<>()).add(dependency);
-                });
+                try (var phase = StartupProfiler.phase("locate." + locator.getClass().getName())) {
+                    final var foundDependencies = locator.locate();
+                    foundDependencies.forEach(dependency -> {
+                        dependencies.computeIfAbsent(dependency.getName(), k -> new ArrayList<>()).add(dependency);
+                    });
+                }
             }
         });
 
         final Map<String, IDependency> finalDependencies = new HashMap<>();
 
-        dependencies.forEach((id, results) -> {
-            final IDependency bestResult = results.stream()
-                    .min(Comparator.comparingInt(r -> r.getModuleNameOrigin().ordinal()))
-                    .get();
-            finalDependencies.put(bestResult.getName(), bestResult);
-        });
+        try (var phase = StartupProfiler.phase("dependencies.select")) {
+            dependencies.forEach((id, results) -> {
+                final IDependency bestResult = results.stream()
+                        .min(Comparator.comparingInt(r -> r.getModuleNameOrigin().ordinal()))
+                        .get();
+                finalDependencies.put(bestResult.getName(), bestResult);
+            });
+        }
+
+        return finalDependencies;
+    }
+
+    /**
+     * Runs the dependency locators and scans the plugins folder, saving a {@link BootSnapshot} when environment is set.
+     */
+    private Configuration resolveConfiguration(ModuleLayer bootstrapLayer, ModuleLayer parent, Path pluginsPath, String environment) {
+        final var finalDependencies = locateDependencies(bootstrapLayer);
 
         Set<String> moduleNames = new HashSet<>();
-        moduleNames.addAll(Util.getModuleNames(pluginsPath));
+        try (var phase = StartupProfiler.phase("plugins.scan")) {
+            moduleNames.addAll(Util.getModuleNames(pluginsPath));
+        }
         moduleNames.addAll(finalDependencies.keySet());
 
-        LOGGER.get().info("----------------------------------------------");
-        LOGGER.get().info("Module Info");
-        LOGGER.get().info("----------------------------------------------");
+        AsyncLog.info(LOGGER, "----------------------------------------------");
+        AsyncLog.info(LOGGER, "Module Info");
+        AsyncLog.info(LOGGER, "----------------------------------------------");
         moduleNames.forEach(name -> {
-            LOGGER.get().info("Module Name -> " + name);
+            AsyncLog.info(LOGGER, "Module Name -> " + name);
         });
-        LOGGER.get().info("----------------------------------------------");
-        LOGGER.get().info("Module -> Jar Info");
-        LOGGER.get().info("----------------------------------------------");
+        AsyncLog.info(LOGGER, "----------------------------------------------");
+        AsyncLog.info(LOGGER, "Module -> Jar Info");
+        AsyncLog.info(LOGGER, "----------------------------------------------");
         finalDependencies.forEach((module, result) -> {
-            LOGGER.get().info("Module -> " + module + " Jar -> " + result.resolveJar() + " Name -> " + result.getName() + " Origin -> " + result.getModuleNameOrigin());
+            AsyncLog.info(LOGGER, "Module -> " + module + " Jar -> " + result.resolveJar() + " Name -> " + result.getName() + " Origin -> " + result.getModuleNameOrigin());
         });
-        LOGGER.get().info("----------------------------------------------");
+        AsyncLog.info(LOGGER, "----------------------------------------------");
 
-        final var moduleCfg = Configuration.resolve(
-                ModuleFinder.of(
-                        finalDependencies.values()
-                                .stream()
-                                .map(IDependency::resolveJar)
-                                .toArray(Path[]::new)
-                ),
-                List.of(
-                        parent.configuration()
-                ),
-                ModuleFinder.of(
-                        pluginsPath
-                ),
-                moduleNames
-        );
-
-        final var moduleCL = new MangoLoaderImpl(moduleCfg.modules(), Thread.currentThread().getContextClassLoader());
-
-        final var moduleLayerController = ModuleLayer.defineModules(moduleCfg, List.of(parent), s -> moduleCL);
-        final var moduleLayer = moduleLayerController.layer();
-
-        Thread.currentThread().setContextClassLoader(moduleCL);
+        final Configuration moduleCfg;
+        try (var phase = StartupProfiler.phase("configuration.resolve")) {
+            moduleCfg = Configuration.resolve(
+                    ModuleFinder.of(
+                            finalDependencies.values()
+                                    .stream()
+                                    .map(IDependency::resolveJar)
+                                    .toArray(Path[]::new)
+                    ),
+                    List.of(
+                            parent.configuration()
+                    ),
+                    ModuleFinder.of(
+                            pluginsPath
+                    ),
+                    moduleNames
+            );
+        }
 
-        moduleCL.load(moduleLayer, moduleLayerController);
+        if (environment != null) {
+            try (var phase = StartupProfiler.phase("bootSnapshot.capture")) {
+                BootSnapshot.capture(
+                        environment,
+                        pluginsPath,
+                        finalDependencies.values().stream().map(IDependency::resolveJar).toList(),
+                        moduleNames,
+                        moduleCfg
+                ).save(Path.of(FAST_BOOT_SNAPSHOT));
+            } catch (IOException e) {
+                LOGGER.get().info("Failed to capture boot snapshot cause -> " + e);
+            }
+        }
 
-        // Allow bootstrap to see the moduleLayer!
-        return moduleLayer;
+        return moduleCfg;
     }
 
     @Override
     public void launch(ModuleLayer moduleLayer, String[] args) {
-        ServiceLoader.load(ILaunchTargetEntrypoint.class)
-                .stream()
-                .map(ServiceLoader.Provider::get)
-                .filter(entrypoint -> entrypoint.getLaunchTargetId().equals("mangobot"))
-                .findAny()
-                .orElseThrow(() -> new IllegalStateException("Unable to find entrypoint for mangobot launch target"))
-                .init(args);
+        // Anything setup queued shows up before the entrypoint starts logging
+        AsyncLog.flush();
+        if (pluginLayers != null) pluginLayers.startPreloading();
+        else if (loader != null) loader.startPreloading();
+
+        // Plugins live in their own loaders, only the aggregate layer sees all of them
+        final ILaunchTargetEntrypoint entrypoint;
+        try (var phase = StartupProfiler.phase("launch.entrypoint")) {
+            // Sequential and lazy, only providers up to the mangobot one are created
+            entrypoint = (pluginLayers != null ? ServiceLoader.load(moduleLayer, ILaunchTargetEntrypoint.class) : ServiceLoader.load(ILaunchTargetEntrypoint.class))
+                    .stream()
+                    .map(ServiceLoader.Provider::get)
+                    .filter(candidate -> candidate.getLaunchTargetId().equals("mangobot"))
+                    .findAny()
+                    .orElseThrow(() -> new IllegalStateException("Unable to find entrypoint for mangobot launch target"));
+        }
+
+        try (var phase = StartupProfiler.phase("launch.init")) {
+            entrypoint.init(args);
+        }
+
+        // Startup is over once init returns, classes used later are not worth preloading, prefetching or caching
+        if (pluginLayers != null) {
+            pluginLayers.finishStartup(CLASS_BYTES_CACHE_KEEP);
+        } else if (loader != null) {
+            loader.savePreloadList();
+            loader.stopPrefetching();
+            if (!CLASS_BYTES_CACHE_KEEP) loader.dropClassBytesCache();
+        }
+        StartupProfiler.finish();
     }
 }
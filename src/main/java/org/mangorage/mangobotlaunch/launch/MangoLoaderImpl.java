@@ -4,60 +4,281 @@ import org.mangorage.bootstrap.api.loader.IMangoLoader;
 import org.mangorage.bootstrap.api.module.IModuleConfigurator;
 import org.mangorage.bootstrap.api.transformer.IClassTransformer;
 import org.mangorage.bootstrap.api.transformer.IClassTransformerHistory;
+import org.mangorage.mangobotlaunch.api.metrics.ClassBytesCacheMetrics;
+import org.mangorage.mangobotlaunch.api.metrics.ClassLoadingMetrics;
+import org.mangorage.mangobotlaunch.api.metrics.ClassLockMetrics;
+import org.mangorage.mangobotlaunch.api.metrics.ClassPrefetchMetrics;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
-import java.lang.module.ModuleDescriptor;
+import java.io.UncheckedIOException;
 import java.lang.module.ModuleReader;
-import java.lang.module.ModuleReference;
 import java.lang.module.ResolvedModule;
 import java.net.URL;
 import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.security.ProtectionDomain;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
-public final class MangoLoaderImpl extends ClassLoader implements IMangoLoader {
+public final class MangoLoaderImpl extends ClassLoader implements IMangoLoader, Closeable {
 
     static {
         ClassLoader.registerAsParallelCapable();
     }
 
-    private final ClassTransformers transformers = new ClassTransformers();
+    private static final boolean CLASS_LOADING_METRICS = Boolean.getBoolean("CLASS_LOADING_METRICS");
+    private static final boolean CLASS_PRELOAD = Boolean.getBoolean("CLASS_PRELOAD");
+    private static final String CLASS_PRELOAD_DIR = System.getProperty("CLASS_PRELOAD_DIR", ".cache/preload");
+    private static final int CLASS_PRELOAD_THREADS = Integer.getInteger("CLASS_PRELOAD_THREADS", Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+    private static final boolean CLASS_PREFETCH = Boolean.getBoolean("CLASS_PREFETCH");
+    private static final long CLASS_PREFETCH_MAX_BYTES = Long.getLong("CLASS_PREFETCH_MAX_BYTES", 32L * 1024 * 1024);
+    private static final int CLASS_PREFETCH_THREADS = Integer.getInteger("CLASS_PREFETCH_THREADS", 1);
+    private static final boolean CLASS_NEGATIVE_CACHE = Boolean.getBoolean("CLASS_NEGATIVE_CACHE");
+    private static final int CLASS_NEGATIVE_CACHE_SIZE = Integer.getInteger("CLASS_NEGATIVE_CACHE_SIZE", 4096);
+    private static final boolean PARENT_PACKAGE_INDEX = Boolean.getBoolean("PARENT_PACKAGE_INDEX");
+    private static final boolean CLASS_BYTES_CACHE = Boolean.getBoolean("CLASS_BYTES_CACHE");
+    private static final long CLASS_BYTES_CACHE_MAX_BYTES = Long.getLong("CLASS_BYTES_CACHE_MAX_BYTES", 16L * 1024 * 1024);
+    private static final boolean STRIPED_CLASS_LOCKS = Boolean.getBoolean("STRIPED_CLASS_LOCKS");
+    private static final int STRIPED_CLASS_LOCKS_STRIPES = Integer.getInteger("STRIPED_CLASS_LOCKS_STRIPES", 64);
+
+    private final LoaderMetrics metrics = CLASS_LOADING_METRICS ? new LoaderMetrics() : null;
+    private final ClassTransformers transformers;
+    // Configurators found by load(), shared with plugin loaders, see PluginLayers
+    private final List<IModuleConfigurator> configurators = new CopyOnWriteArrayList<>();
+    // Base loader of a plugin loader, whose transformers and configurators it shares, null otherwise
+    private final MangoLoaderImpl shared;
+    // Loaders whose modules configurators may name as children, besides our own
+    private final List<MangoLoaderImpl> linked;
+    private volatile ModuleLayer moduleLayer;
     private final Map<String, LoadedModule> moduleMap = new ConcurrentHashMap<>();
-    private final Map<String, LoadedModule> localPackageToModule = new ConcurrentHashMap<>();
+    // Frozen once the modules are known, looked up straight from class and resource names
+    private final PackageIndex<LoadedModule> localPackageToModule;
+
+    // Resources outside of our packages (META-INF, root files, directories), built once the module graph is final
+    private volatile Map<String, List<LoadedModule>> resourceIndex;
+    private final Map<String, List<URL>> resourceLookupCache = new ConcurrentHashMap<>();
+
+    private final ClassPreloader preloader;
+    private final ClassBytesCache classBytesCache = CLASS_BYTES_CACHE ? new ClassBytesCache(CLASS_BYTES_CACHE_MAX_BYTES) : null;
+    private final ClassPrefetcher prefetcher = CLASS_PREFETCH ? new ClassPrefetcher(CLASS_PREFETCH_MAX_BYTES, CLASS_PREFETCH_THREADS, this::hasClass) : null;
+    // Packages of modules in sibling layers this loader's modules read, see PluginLayers
+    private final PackageIndex<ClassLoader> remotePackageToLoader;
+
+    // Names the parent could not find, and the loader of every package a module in a parent layer owns
+    private final NegativeLookupCache negativeLookupCache = CLASS_NEGATIVE_CACHE ? new NegativeLookupCache(CLASS_NEGATIVE_CACHE_SIZE) : null;
+    private volatile PackageIndex<ClassLoader> parentPackageToLoader = new PackageIndex<>(Map.of());
+
+    // Replaces the per class monitor of getClassLoadingLock, see ClassDefinitionLocks
+    private final ClassDefinitionLocks definitionLocks = STRIPED_CLASS_LOCKS ? new ClassDefinitionLocks(STRIPED_CLASS_LOCKS_STRIPES, this::findLoadedClass) : null;
 
     public MangoLoaderImpl(Set<ResolvedModule> modules, ClassLoader parent) {
+        this(modules, parent, Map.of(), null);
+    }
+
+    /**
+     * @param remotePackageToLoader loaders to delegate to, by package, before falling back to parent
+     * @param shared                loader whose transformers and configurators this one uses and adds its own to,
+     *                              so they see every class as they would with a single loader, null for none
+     */
+    MangoLoaderImpl(Set<ResolvedModule> modules, ClassLoader parent, Map<String, ClassLoader> remotePackageToLoader, MangoLoaderImpl shared) {
         super(parent);
-        initializeModules(modules);
+        this.shared = shared;
+        this.transformers = shared != null ? shared.transformers : new ClassTransformers(metrics);
+        final List<MangoLoaderImpl> linked = new ArrayList<>();
+        remotePackageToLoader.values().forEach(loader -> {
+            if (loader instanceof MangoLoaderImpl remote && !linked.contains(remote)) linked.add(remote);
+        });
+        if (shared != null) linked.add(shared);
+        this.linked = List.copyOf(linked);
+        this.remotePackageToLoader = new PackageIndex<>(remotePackageToLoader);
+        this.localPackageToModule = initializeModules(modules);
+        // Named base, or after the plugin module a plugin loader holds
+        final var name = shared == null ? "base" : modules.stream().map(ResolvedModule::name).sorted().collect(Collectors.joining("+"));
+        this.preloader = CLASS_PRELOAD ? new ClassPreloader(Path.of(CLASS_PRELOAD_DIR), name, modules, CLASS_PRELOAD_THREADS) : null;
+        if (metrics != null) metrics.register(name);
     }
 
-    private void initializeModules(Set<ResolvedModule> modules) {
+    private PackageIndex<LoadedModule> initializeModules(Set<ResolvedModule> modules) {
+        final Map<String, LoadedModule> packages = new HashMap<>();
         modules.forEach(module -> {
-            var loadedModule = new LoadedModule(module.reference());
+            // Plugin jars can be overwritten by a hot reload while mapped, which faults on the next read
+            var loadedModule = new LoadedModule(module.reference(), shared == null);
             moduleMap.put(module.name(), loadedModule);
-            module.reference().descriptor().packages().forEach(pkg -> localPackageToModule.put(pkg, loadedModule));
+            module.reference().descriptor().packages().forEach(pkg -> packages.put(pkg, loadedModule));
         });
+        return new PackageIndex<>(packages);
     }
 
     void load(final ModuleLayer moduleLayer, final ModuleLayer.Controller controller) {
-        var moduleLayerImpl = new ModuleLayerImpl(moduleLayer, controller);
-        ServiceLoader.load(IModuleConfigurator.class)
-                .stream()
-                .map(ServiceLoader.Provider::get)
-                .forEach(configurator -> {
-                    configurator.configureModuleLayer(moduleLayerImpl);
-                    moduleMap.forEach((id, module) ->
-                            configurator.getChildren(id).stream()
-                                    .filter(moduleMap::containsKey)
-                                    .map(moduleMap::get)
-                                    .forEach(module::addChild)
-                    );
+        this.moduleLayer = moduleLayer;
+        try (var phase = StartupProfiler.phase("loader.configurators")) {
+            configure(new ModuleLayerImpl(moduleLayer, controller));
+        }
+
+        try (var phase = StartupProfiler.phase("loader.resourceIndex")) {
+            moduleMap.values().forEach(LoadedModule::resolveSearchOrder);
+            buildResourceIndex();
+        }
+        invalidateLookupCaches(moduleLayer);
+
+        try (var phase = StartupProfiler.phase("loader.transformers")) {
+            ConcurrentStartup.instantiate(providers(IClassTransformer.class, moduleLayer))
+                    .forEach(transformers::add);
+        }
+    }
+
+    /**
+     * @return every provider visible to the context loader, or only those of moduleLayer for a plugin loader as the
+     * shared loader already has the rest
+     */
+    private <S> Stream<ServiceLoader.Provider<S>> providers(Class<S> service, ModuleLayer moduleLayer) {
+        if (shared == null) return ServiceLoader.load(service).stream();
+        return ServiceLoader.load(moduleLayer, service).stream()
+                .filter(provider -> provider.type().getModule().getLayer() == moduleLayer);
+    }
+
+    private void configure(ModuleLayerImpl moduleLayerImpl) {
+        final var owner = shared != null ? shared : this;
+        owner.configurators.addAll(ConcurrentStartup.instantiate(providers(IModuleConfigurator.class, moduleLayer)));
+        final List<IModuleConfigurator> configurators = List.copyOf(owner.configurators);
+
+        // Layer changes stay on this thread, in provider order
+        configurators.forEach(configurator -> configurator.configureModuleLayer(moduleLayerImpl));
+
+        // Child queries may run concurrently, children are added in configurator then module order regardless
+        record ChildQuery(IModuleConfigurator configurator, String id) {}
+        final List<String> ids = List.copyOf(moduleMap.keySet());
+        final List<ChildQuery> queries = new ArrayList<>(configurators.size() * ids.size());
+        configurators.forEach(configurator -> ids.forEach(id -> queries.add(new ChildQuery(configurator, id))));
+
+        final var children = ConcurrentStartup.map(queries, query -> query.configurator().getChildren(query.id()));
+        for (int i = 0; i < queries.size(); i++) {
+            final var module = moduleMap.get(queries.get(i).id());
+            children.get(i).stream()
+                    .map(this::findLinkedModule)
+                    .filter(Objects::nonNull)
+                    .forEach(module::addChild);
+        }
+    }
+
+    /**
+     * @return our module named name, else that of a required plugin or the base layer, which are only ever reloaded
+     * together with us
+     */
+    private LoadedModule findLinkedModule(String name) {
+        final var module = moduleMap.get(name);
+        if (module != null) return module;
+        for (MangoLoaderImpl loader : linked) {
+            final var linkedModule = loader.moduleMap.get(name);
+            if (linkedModule != null) return linkedModule;
+        }
+        return null;
+    }
+
+    /**
+     * Forgets every cached miss and indexes the packages of the layers above moduleLayer again. load() is the only
+     * place modules are added to a loader, plugin reloads get new loaders, so this runs there.
+     */
+    private void invalidateLookupCaches(ModuleLayer moduleLayer) {
+        if (PARENT_PACKAGE_INDEX) {
+            final Map<String, ClassLoader> packages = new HashMap<>();
+            final Set<ModuleLayer> seen = new HashSet<>();
+            final Deque<ModuleLayer> layers = new ArrayDeque<>(moduleLayer.parents());
+            // Breadth first, so the closest layer wins like delegation would
+            while (!layers.isEmpty()) {
+                final var layer = layers.poll();
+                if (!seen.add(layer)) continue;
+                layer.modules().forEach(module -> {
+                    final var loader = module.getClassLoader() != null ? module.getClassLoader() : ClassLoader.getPlatformClassLoader();
+                    module.getPackages().forEach(pkg -> packages.putIfAbsent(pkg, loader));
                 });
+                layers.addAll(layer.parents());
+            }
+            parentPackageToLoader = new PackageIndex<>(packages);
+        }
+
+        if (negativeLookupCache != null) negativeLookupCache.clear();
+        resourceLookupCache.clear();
+    }
+
+    private void buildResourceIndex() {
+        final Map<String, List<LoadedModule>> index = new HashMap<>();
+        final Map<LoadedModule, List<String>> listings = new HashMap<>();
+        moduleMap.values().forEach(module -> {
+            final List<String> entries;
+            try (var stream = module.getModuleReader().list()) {
+                entries = stream.toList();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to index resources of module " + module.name(), e);
+            }
+            if (prefetcher != null) listings.put(module, entries);
+
+            module.setEntryFilter(EntryFilter.of(entries));
+            for (String entry : entries) {
+                index(index, entry, module);
+                // ModuleReader.find resolves a directory without its trailing slash too, like EntryFilter.of
+                if (entry.length() > 1 && entry.endsWith("/")) index(index, entry.substring(0, entry.length() - 1), module);
+            }
+        });
+
+        // LoadedModule.find searches its whole search order, so a resource is reachable through every module whose order holds its owner
+        final Map<LoadedModule, List<LoadedModule>> searchers = new HashMap<>();
+        moduleMap.values().forEach(module ->
+                module.getSearchOrder().forEach(searched -> searchers.computeIfAbsent(searched, k -> new ArrayList<>()).add(module))
+        );
+
+        final Map<String, List<LoadedModule>> reachableIndex = new HashMap<>(index.size());
+        index.forEach((entry, owners) -> {
+            final Set<LoadedModule> reachable = new HashSet<>();
+            owners.forEach(owner -> reachable.addAll(searchers.getOrDefault(owner, List.of())));
+            reachableIndex.put(entry, moduleMap.values().stream().filter(reachable::contains).toList());
+        });
+
+        resourceLookupCache.clear();
+        resourceIndex = reachableIndex;
+        if (prefetcher != null) prefetcher.index(listings);
+    }
+
+    private void index(Map<String, List<LoadedModule>> index, String name, LoadedModule module) {
+        if (localPackageToModule.getForResource(name) != null) return;
+        final var owners = index.computeIfAbsent(name, k -> new ArrayList<>(1));
+        if (!owners.contains(module)) owners.add(module);
+    }
+
+    /**
+     * Defines the classes recorded on the previous boot in the background, and saves this boot's list on shutdown.
+     * Does nothing unless -DCLASS_PRELOAD=true, must run after {@link #load(ModuleLayer, ModuleLayer.Controller)}.
+     */
+    void startPreloading() {
+        if (preloader == null) return;
+        Runtime.getRuntime().addShutdownHook(new Thread(preloader::save, "MangoBot-Preload-Save"));
+        preloader.replay(this);
+    }
+
+    /**
+     * Saves the classes defined so far as the preload list for the next boot, later defines are not recorded.
+     */
+    void savePreloadList() {
+        if (preloader != null) preloader.save();
+    }
+
+    /**
+     * Drops whatever was read ahead and not used yet, see {@link ClassPrefetcher}. Does nothing unless -DCLASS_PREFETCH=true.
+     */
+    void stopPrefetching() {
+        if (prefetcher != null) prefetcher.stop();
+    }
 
-        ServiceLoader.load(IClassTransformer.class)
-                .stream()
-                .map(ServiceLoader.Provider::get)
-                .forEach(transformers::add);
+    /**
+     * Empties the {@link #getClassBytes(String)} cache and stops filling it. Does nothing unless -DCLASS_BYTES_CACHE=true.
+     */
+    void dropClassBytesCache() {
+        if (classBytesCache != null) classBytesCache.drop();
     }
 
     @Override
@@ -67,28 +288,59 @@ public final class MangoLoaderImpl extends ClassLoader implements IMangoLoader {
 
     @Override
     protected Class<?> loadClass(String cn, boolean resolve) throws ClassNotFoundException {
+        // Only defines need the lock then, they take it themselves
+        if (definitionLocks != null) return loadClassUnlocked(cn, resolve);
+
         synchronized (getClassLoadingLock(cn)) {
-            Class<?> c = findLoadedClass(cn);
-            if (c == null) {
-                LoadedModule loadedModule = findLoadedModule(cn);
-                if (loadedModule != null) {
-                    c = defineClass(cn, loadedModule);
-                } else {
-                    return getParent().loadClass(cn);
-                }
+            return loadClassUnlocked(cn, resolve);
+        }
+    }
+
+    private Class<?> loadClassUnlocked(String cn, boolean resolve) throws ClassNotFoundException {
+        Class<?> c = findLoadedClass(cn);
+        if (c == null) {
+            LoadedModule loadedModule = findLoadedModule(cn);
+            if (loadedModule != null) {
+                c = defineClassOnce(cn, loadedModule);
+            } else {
+                if (metrics != null) metrics.parentDelegation();
+                final var remote = remotePackageToLoader.getForClass(cn);
+                return remote != null ? remote.loadClass(cn) : loadClassFromParent(cn);
             }
-            if (resolve) resolveClass(c);
-            return c;
+        }
+        if (resolve) resolveClass(c);
+        return c;
+    }
+
+    private Class<?> loadClassFromParent(String cn) throws ClassNotFoundException {
+        if (negativeLookupCache != null && negativeLookupCache.contains(cn)) throw NegativeLookupCache.missing(cn);
+
+        // A package a named module owns can only come from that module's loader, go there without walking the chain
+        final var owner = parentPackageToLoader.getForClass(cn);
+        try {
+            return owner != null ? owner.loadClass(cn) : getParent().loadClass(cn);
+        } catch (ClassNotFoundException e) {
+            if (negativeLookupCache != null) negativeLookupCache.add(cn);
+            throw e;
         }
     }
 
     @Override
     public URL findResource(String name) {
-        String pn = toPackageName(name);
-        LoadedModule module = localPackageToModule.get(pn);
+        final URL url = findResourceUnrecorded(name);
+        if (metrics != null) metrics.resourceLookup(url != null);
+        return url;
+    }
+
+    private URL findResourceUnrecorded(String name) {
+        LoadedModule module = localPackageToModule.getForResource(name);
         if (module != null) {
             return tryFindResource(module, name);
         }
+        if (resourceIndex != null) {
+            final var urls = findIndexedResources(name);
+            return urls.isEmpty() ? null : urls.get(0);
+        }
         return moduleMap.values().stream()
                 .map(moduleRef -> tryFindResource(moduleRef, name))
                 .filter(Objects::nonNull)
@@ -98,16 +350,20 @@ public final class MangoLoaderImpl extends ClassLoader implements IMangoLoader {
 
     @Override
     protected Enumeration<URL> findResources(String name) throws IOException {
-        return Collections.enumeration(findResourcesAsList(name));
+        final var urls = findResourcesAsList(name);
+        if (metrics != null) metrics.resourceLookup(!urls.isEmpty());
+        return Collections.enumeration(urls);
     }
 
     private List<URL> findResourcesAsList(String name){
-        String pn = toPackageName(name);
-        LoadedModule module = localPackageToModule.get(pn);
+        LoadedModule module = localPackageToModule.getForResource(name);
         if (module != null) {
             URL url = tryFindResource(module, name);
             return url == null ? Collections.emptyList() : List.of(url);
         }
+        if (resourceIndex != null) {
+            return findIndexedResources(name);
+        }
         List<URL> urls = new ArrayList<>();
         for (LoadedModule mref : moduleMap.values()) {
             URL url = tryFindResource(mref, name);
@@ -116,10 +372,25 @@ public final class MangoLoaderImpl extends ClassLoader implements IMangoLoader {
         return urls;
     }
 
+    private List<URL> findIndexedResources(String name) {
+        // Names missing from the index are answered by it alone, so the cache never holds more names than the index
+        final var indexed = resourceIndex.getOrDefault(name, List.of());
+        if (indexed.isEmpty()) return List.of();
+
+        return resourceLookupCache.computeIfAbsent(name, key -> {
+            final List<URL> urls = new ArrayList<>(indexed.size());
+            for (LoadedModule owner : indexed) {
+                URL url = tryFindResource(owner, key);
+                if (url != null) urls.add(url);
+            }
+            return List.copyOf(urls);
+        });
+    }
+
     private URL tryFindResource(LoadedModule module, String name) {
         try {
             URL url = findResource(module.name(), name);
-            return (url != null && (name.endsWith(".class") || url.toString().endsWith("/") || isOpen(module.getModuleReference(), toPackageName(name)))) ? url : null;
+            return (url != null && (name.endsWith(".class") || url.toString().endsWith("/") || module.isOpen(toPackageName(name)))) ? url : null;
         } catch (IOException e) {
             return null;
         }
@@ -138,7 +409,7 @@ public final class MangoLoaderImpl extends ClassLoader implements IMangoLoader {
     @Override
     protected Class<?> findClass(String cn) throws ClassNotFoundException {
         LoadedModule loadedModule = findLoadedModule(cn);
-        if (loadedModule != null) return defineClass(cn, loadedModule);
+        if (loadedModule != null) return defineClassOnce(cn, loadedModule);
         throw new ClassNotFoundException(cn);
     }
 
@@ -146,13 +417,99 @@ public final class MangoLoaderImpl extends ClassLoader implements IMangoLoader {
     protected Class<?> findClass(String moduleName, String name) {
         LoadedModule loadedModule = findLoadedModule(name);
         if (loadedModule != null && loadedModule.getModuleReference().descriptor().name().equals(moduleName)) {
-            return defineClass(name, loadedModule);
+            return defineClassOnce(name, loadedModule);
         } else if (loadedModule != null) {
             throw new IllegalArgumentException(String.format("Expected Class '%s' in module '%s', but found in '%s'", name, moduleName, loadedModule.getModuleReference().descriptor().name()));
         }
         return null;
     }
 
+    /**
+     * @return the number of modules that currently hold an open {@link ModuleReader}
+     */
+    public int getOpenReaderCount() {
+        return (int) moduleMap.values().stream().filter(LoadedModule::isReaderOpen).count();
+    }
+
+    /**
+     * @return how many times an already open {@link ModuleReader} was handed out instead of opening a new one
+     */
+    public long getReaderReuseCount() {
+        return moduleMap.values().stream().mapToLong(LoadedModule::getReaderReuseCount).sum();
+    }
+
+    /**
+     * @return the class loading counters so far, {@link ClassLoadingMetrics#EMPTY} unless -DCLASS_LOADING_METRICS=true
+     */
+    public ClassLoadingMetrics getMetrics() {
+        return metrics != null ? metrics.snapshot() : ClassLoadingMetrics.EMPTY;
+    }
+
+    /**
+     * @return the package prefetch counters so far, {@link ClassPrefetchMetrics#EMPTY} unless -DCLASS_PREFETCH=true
+     */
+    public ClassPrefetchMetrics getPrefetchMetrics() {
+        return prefetcher != null ? prefetcher.snapshot() : ClassPrefetchMetrics.EMPTY;
+    }
+
+    /**
+     * @return the getClassBytes cache counters so far, {@link ClassBytesCacheMetrics#EMPTY} unless -DCLASS_BYTES_CACHE=true
+     */
+    public ClassBytesCacheMetrics getClassBytesCacheMetrics() {
+        return classBytesCache != null ? classBytesCache.snapshot() : ClassBytesCacheMetrics.EMPTY;
+    }
+
+    /**
+     * @return how long loads waited on each lock stripe so far, {@link ClassLockMetrics#EMPTY} unless -DSTRIPED_CLASS_LOCKS=true
+     */
+    public ClassLockMetrics getLockMetrics() {
+        return definitionLocks != null ? definitionLocks.snapshot() : ClassLockMetrics.EMPTY;
+    }
+
+    /**
+     * Closes every {@link ModuleReader} held by this loader, classes can no longer be loaded from its modules afterwards.
+     */
+    @Override
+    public void close() throws IOException {
+        detach();
+        closeModules(List.copyOf(moduleMap.values()));
+    }
+
+    /**
+     * Like {@link #close()}, except the modules stay open so classes of this loader still in use can load the rest of
+     * theirs. The returned action closes them, it holds no reference to this loader so it can run once it is unreachable.
+     */
+    Closeable retire() {
+        detach();
+        final var modules = List.copyOf(moduleMap.values());
+        return () -> closeModules(modules);
+    }
+
+    // Stops counting, prefetching and contributing transformers and configurators to the shared loader
+    private void detach() {
+        if (metrics != null) metrics.unregister();
+        if (prefetcher != null) prefetcher.stop();
+        if (classBytesCache != null) classBytesCache.drop();
+        if (shared != null && moduleLayer != null) {
+            final var layer = moduleLayer;
+            transformers.removeFrom(layer);
+            shared.configurators.removeIf(configurator -> configurator.getClass().getModule().getLayer() == layer);
+        }
+    }
+
+    private static void closeModules(List<LoadedModule> modules) throws IOException {
+        IOException failure = null;
+        for (LoadedModule module : modules) {
+            try {
+                module.close();
+            } catch (IOException e) {
+                if (failure == null) failure = e;
+                else failure.addSuppressed(e);
+            }
+        }
+        if (failure != null) throw failure;
+    }
+
     @Override
     public IClassTransformerHistory getTransformerHistory() {
         return transformers;
@@ -160,17 +517,36 @@ public final class MangoLoaderImpl extends ClassLoader implements IMangoLoader {
 
     @Override
     public byte[] getClassBytes(String cn) {
+        if (classBytesCache != null) {
+            final byte[] cached = classBytesCache.get(cn);
+            if (cached != null) return cached;
+        }
+
         LoadedModule loadedModule = findLoadedModule(cn);
-        return loadedModule != null ? getClassBytesFromModule(loadedModule, cn) : getClassBytesFromParent(cn);
+        final byte[] classBytes = loadedModule != null ? getClassBytesFromModule(loadedModule, cn) : getClassBytesFromParent(cn);
+        if (classBytesCache != null && classBytes != null) classBytesCache.put(cn, classBytes);
+        return classBytes;
     }
 
     private byte[] getClassBytesFromModule(LoadedModule loadedModule, String cn) {
+        if (prefetcher != null) {
+            final byte[] prefetched = prefetcher.peek(cn);
+            if (prefetched != null) return prefetched;
+        }
+
         try {
             ModuleReader reader = loadedModule.getModuleReader();
             String rn = cn.replace('.', '/') + ".class";
             ByteBuffer bb = reader.read(rn).orElse(null);
-            return bb == null ? null : bb.array();
+            if (bb == null) return null;
+            try {
+                StartupProfiler.classRead(bb.remaining());
+                return toArray(bb);
+            } finally {
+                reader.release(bb);
+            }
         } catch (IOException e) {
+            if (loadedModule.isClosed()) return null;
             throw new RuntimeException(e);
         }
     }
@@ -185,45 +561,72 @@ public final class MangoLoaderImpl extends ClassLoader implements IMangoLoader {
         }
     }
 
+    /**
+     * Callers hold the class loading lock of cn, unless -DSTRIPED_CLASS_LOCKS=true which locks here instead.
+     */
+    private Class<?> defineClassOnce(String cn, LoadedModule loadedModule) {
+        return definitionLocks != null ? definitionLocks.define(cn, () -> defineClass(cn, loadedModule)) : defineClass(cn, loadedModule);
+    }
+
     private Class<?> defineClass(String cn, LoadedModule loadedModule) {
+        if (prefetcher != null) {
+            final byte[] prefetched = prefetcher.take(cn);
+            if (prefetched != null) return defineClass(cn, loadedModule, prefetched);
+        }
+
         try {
             ModuleReader reader = loadedModule.getModuleReader();
             String rn = cn.replace('.', '/').concat(".class");
+            final long readStart = metrics != null ? System.nanoTime() : 0;
             ByteBuffer bb = reader.read(rn).orElse(null);
             if (bb == null) return null;
 
-            byte[] classBytes = bb.array();
-            byte[] modifiedClassBytes = transformers.transform(cn, classBytes);
+            try {
+                if (metrics != null) metrics.moduleRead(loadedModule.name(), cn, bb.remaining(), readStart);
+                StartupProfiler.classRead(bb.remaining());
+
+                if (transformers.hasTransformers(cn)) return defineClass(cn, loadedModule, toArray(bb));
 
-            if (modifiedClassBytes != null) {
-                return defineClass(cn, modifiedClassBytes, 0, modifiedClassBytes.length);
+                // Nothing to transform, define straight from the reader's buffer
+                final long defineStart = metrics != null ? System.nanoTime() : 0;
+                final Class<?> c = defineClass(cn, bb, (ProtectionDomain) null);
+                if (metrics != null) metrics.defined(loadedModule.name(), cn, defineStart);
+                if (preloader != null) preloader.defined(cn);
+                return c;
+            } finally {
+                reader.release(bb);
             }
-            return defineClass(cn, classBytes, 0, classBytes.length);
         } catch (IOException ioe) {
             return null;
         }
     }
 
-    private LoadedModule findLoadedModule(String cn) {
-        String pn = packageName(cn);
-        return pn.isEmpty() ? null : localPackageToModule.get(pn);
+    private Class<?> defineClass(String cn, LoadedModule loadedModule, byte[] classBytes) {
+        byte[] modifiedClassBytes = transformers.hasTransformers(cn) ? transformers.transform(cn, classBytes) : null;
+        byte[] definedBytes = modifiedClassBytes != null ? modifiedClassBytes : classBytes;
+
+        final long defineStart = metrics != null ? System.nanoTime() : 0;
+        final Class<?> c = defineClass(cn, definedBytes, 0, definedBytes.length);
+        if (metrics != null) metrics.defined(loadedModule.name(), cn, defineStart);
+        if (preloader != null) preloader.defined(cn);
+        return c;
     }
 
-    private String packageName(String cn) {
-        int pos = cn.lastIndexOf('.');
-        return (pos < 0) ? "" : cn.substring(0, pos);
+    private static byte[] toArray(ByteBuffer bb) {
+        if (bb.hasArray() && bb.arrayOffset() == 0 && bb.position() == 0 && bb.remaining() == bb.array().length) {
+            return bb.array();
+        }
+        final byte[] bytes = new byte[bb.remaining()];
+        bb.duplicate().get(bytes);
+        return bytes;
+    }
+
+    private LoadedModule findLoadedModule(String cn) {
+        return localPackageToModule.getForClass(cn);
     }
 
     private static String toPackageName(String name) {
         int index = name.lastIndexOf('/');
         return (index == -1 || index == name.length() - 1) ? "" : name.substring(0, index).replace('/', '.');
     }
-
-    private boolean isOpen(ModuleReference mref, String pn) {
-        if (pn.isEmpty()) return true; // Open if its well, root...
-
-        ModuleDescriptor descriptor = mref.descriptor();
-        if (descriptor.isOpen() || descriptor.isAutomatic()) return true;
-        return descriptor.opens().stream().anyMatch(opens -> !opens.isQualified() && opens.source().equals(pn));
-    }
 }
@@ -0,0 +1,277 @@
+package org.mangorage.mangobotlaunch.launch;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.module.ModuleReader;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * {@link ModuleReader} over a memory mapped jar.
+ * <p>
+ * Stored entries are returned as read only slices of the mapping, deflated ones are inflated into pooled direct
+ * buffers that go back to the pool on {@link #release(ByteBuffer)}. Only plain jars are handled, {@link #open(Path)}
+ * returns null for zip64, encrypted, signed or multi-release jars so the JDK reader is used for those.
+ */
+final class MappedJarReader implements ModuleReader {
+    private static final int END_HEADER = 0x06054b50;
+    private static final int CENTRAL_HEADER = 0x02014b50;
+    private static final int LOCAL_HEADER = 0x04034b50;
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+
+    private static final int MIN_POOLED = 4 * 1024;
+    private static final int MAX_POOLED = 8 * 1024 * 1024;
+    private static final int BUFFERS_PER_SIZE = 16;
+
+    // Pooled buffers by size class, a class holds buffers of exactly MIN_POOLED << index bytes
+    @SuppressWarnings("unchecked")
+    private static final ConcurrentLinkedQueue<ByteBuffer>[] BUFFERS = new ConcurrentLinkedQueue[Integer.numberOfTrailingZeros(MAX_POOLED / MIN_POOLED) + 1];
+    private static final AtomicInteger[] BUFFER_COUNTS = new AtomicInteger[BUFFERS.length];
+    private static final ConcurrentLinkedQueue<Inflater> INFLATERS = new ConcurrentLinkedQueue<>();
+
+    static {
+        for (int i = 0; i < BUFFERS.length; i++) {
+            BUFFERS[i] = new ConcurrentLinkedQueue<>();
+            BUFFER_COUNTS[i] = new AtomicInteger();
+        }
+    }
+
+    private record Entry(String name, int method, int compressedSize, int size, int localHeaderOffset) {}
+
+    private final URI location;
+    private final MappedByteBuffer mapping;
+    private final Map<String, Entry> entries;
+    private volatile boolean closed = false;
+
+    private MappedJarReader(URI location, MappedByteBuffer mapping, Map<String, Entry> entries) {
+        this.location = location;
+        this.mapping = mapping;
+        this.entries = entries;
+    }
+
+    /**
+     * @return a reader for jar, or null when the jar uses anything this reader does not handle
+     */
+    static MappedJarReader open(Path jar) throws IOException {
+        final MappedByteBuffer mapping;
+        try (var channel = FileChannel.open(jar, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) return null;
+            mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        mapping.order(ByteOrder.LITTLE_ENDIAN);
+
+        final var entries = readCentralDirectory(mapping);
+        if (entries == null) return null;
+
+        final var reader = new MappedJarReader(jar.toUri(), mapping, entries);
+        return reader.isPlain() ? reader : null;
+    }
+
+    @Override
+    public Optional<URI> find(String name) throws IOException {
+        ensureOpen();
+        final var entry = entry(name);
+        if (entry == null) return Optional.empty();
+        try {
+            return Optional.of(URI.create("jar:" + location + "!/" + new URI(null, entry.name(), null).getRawPath()));
+        } catch (URISyntaxException e) {
+            throw new IOException("Bad entry name " + entry.name() + " in " + location, e);
+        }
+    }
+
+    @Override
+    public Optional<InputStream> open(String name) throws IOException {
+        final var buffer = read(name);
+        if (buffer.isEmpty()) return Optional.empty();
+
+        final var bb = buffer.get();
+        try {
+            final byte[] bytes = new byte[bb.remaining()];
+            bb.get(bytes);
+            return Optional.of(new ByteArrayInputStream(bytes));
+        } finally {
+            release(bb);
+        }
+    }
+
+    @Override
+    public Optional<ByteBuffer> read(String name) throws IOException {
+        ensureOpen();
+        final var entry = entries.get(name);
+        if (entry == null) return Optional.empty();
+
+        final int dataOffset = dataOffset(entry);
+        return switch (entry.method()) {
+            case STORED -> Optional.of(mapping.slice(dataOffset, entry.size()).asReadOnlyBuffer());
+            case DEFLATED -> Optional.of(inflate(entry, dataOffset));
+            default -> throw new IOException("Unsupported compression method " + entry.method() + " for " + name + " in " + location);
+        };
+    }
+
+    /**
+     * Returns inflated buffers to the pool, slices of the mapping need nothing.
+     */
+    @Override
+    public void release(ByteBuffer bb) {
+        if (bb.isReadOnly() || !bb.isDirect()) return;
+
+        final int capacity = bb.capacity();
+        if (capacity < MIN_POOLED || capacity > MAX_POOLED || Integer.bitCount(capacity) != 1) return;
+
+        final int sizeClass = Integer.numberOfTrailingZeros(capacity / MIN_POOLED);
+        if (BUFFER_COUNTS[sizeClass].incrementAndGet() <= BUFFERS_PER_SIZE) {
+            BUFFERS[sizeClass].offer(bb.clear());
+        } else {
+            BUFFER_COUNTS[sizeClass].decrementAndGet();
+        }
+    }
+
+    @Override
+    public Stream<String> list() throws IOException {
+        ensureOpen();
+        return entries.keySet().stream();
+    }
+
+    /**
+     * The mapping itself is unmapped once it is garbage collected, so the jar must not be overwritten while the reader
+     * is reachable. Plugin layer loaders never map for that reason, see {@link LoadedModule}.
+     */
+    @Override
+    public void close() {
+        closed = true;
+    }
+
+    private boolean isPlain() {
+        for (String name : entries.keySet()) {
+            if (!name.startsWith("META-INF/") || name.indexOf('/', 9) >= 0) continue;
+            if (name.endsWith(".SF") || name.endsWith(".RSA") || name.endsWith(".DSA") || name.endsWith(".EC")) return false;
+        }
+
+        final var manifest = entries.get("META-INF/MANIFEST.MF");
+        if (manifest == null) return true;
+        try {
+            final var bb = read(manifest.name()).orElseThrow();
+            final byte[] bytes = new byte[bb.remaining()];
+            bb.get(bytes);
+            release(bb);
+            return !new String(bytes, StandardCharsets.UTF_8).toLowerCase(Locale.ROOT).contains("multi-release: true");
+        } catch (IOException | RuntimeException e) {
+            return false;
+        }
+    }
+
+    // Like ZipFile.getEntry, a name without the trailing slash also finds a directory entry
+    private Entry entry(String name) {
+        final var entry = entries.get(name);
+        if (entry != null || name.endsWith("/")) return entry;
+        return entries.get(name + "/");
+    }
+
+    private int dataOffset(Entry entry) throws IOException {
+        final int offset = entry.localHeaderOffset();
+        if (mapping.getInt(offset) != LOCAL_HEADER) throw new IOException("Bad local header for " + entry.name() + " in " + location);
+        return offset + 30 + Short.toUnsignedInt(mapping.getShort(offset + 26)) + Short.toUnsignedInt(mapping.getShort(offset + 28));
+    }
+
+    private ByteBuffer inflate(Entry entry, int dataOffset) throws IOException {
+        final var output = acquire(entry.size());
+        var inflater = INFLATERS.poll();
+        if (inflater == null) inflater = new Inflater(true);
+
+        try {
+            inflater.setInput(mapping.slice(dataOffset, entry.compressedSize()));
+            while (output.hasRemaining() && !inflater.finished()) {
+                if (inflater.inflate(output) == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+            }
+            if (output.hasRemaining()) throw new IOException("Truncated entry " + entry.name() + " in " + location);
+            return output.flip();
+        } catch (DataFormatException e) {
+            release(output);
+            throw new IOException("Corrupted entry " + entry.name() + " in " + location, e);
+        } catch (IOException e) {
+            release(output);
+            throw e;
+        } finally {
+            inflater.reset();
+            INFLATERS.offer(inflater);
+        }
+    }
+
+    private static ByteBuffer acquire(int size) {
+        if (size > MAX_POOLED) return ByteBuffer.allocateDirect(size);
+
+        final int capacity = Math.max(MIN_POOLED, Integer.highestOneBit(Math.max(1, size - 1)) << 1);
+        final int sizeClass = Integer.numberOfTrailingZeros(capacity / MIN_POOLED);
+        final var pooled = BUFFERS[sizeClass].poll();
+        if (pooled == null) return ByteBuffer.allocateDirect(capacity).limit(size);
+
+        BUFFER_COUNTS[sizeClass].decrementAndGet();
+        return pooled.clear().limit(size);
+    }
+
+    private static Map<String, Entry> readCentralDirectory(ByteBuffer zip) {
+        final int end = findEndHeader(zip);
+        if (end < 0) return null;
+
+        final int total = Short.toUnsignedInt(zip.getShort(end + 10));
+        final long directoryOffset = Integer.toUnsignedLong(zip.getInt(end + 16));
+        if (total == 0xFFFF || directoryOffset == 0xFFFFFFFFL) return null; // zip64
+
+        final Map<String, Entry> entries = new HashMap<>(total * 4 / 3 + 1);
+        int offset = (int) directoryOffset;
+        for (int i = 0; i < total; i++) {
+            if (offset + 46 > zip.limit() || zip.getInt(offset) != CENTRAL_HEADER) return null;
+
+            final int flags = Short.toUnsignedInt(zip.getShort(offset + 8));
+            final int method = Short.toUnsignedInt(zip.getShort(offset + 10));
+            final long compressedSize = Integer.toUnsignedLong(zip.getInt(offset + 20));
+            final long size = Integer.toUnsignedLong(zip.getInt(offset + 24));
+            final int nameLength = Short.toUnsignedInt(zip.getShort(offset + 28));
+            final int extraLength = Short.toUnsignedInt(zip.getShort(offset + 30));
+            final int commentLength = Short.toUnsignedInt(zip.getShort(offset + 32));
+            final long localHeaderOffset = Integer.toUnsignedLong(zip.getInt(offset + 42));
+
+            if ((flags & 1) != 0) return null; // encrypted
+            if (compressedSize >= Integer.MAX_VALUE || size >= Integer.MAX_VALUE || localHeaderOffset >= Integer.MAX_VALUE) return null;
+
+            final byte[] name = new byte[nameLength];
+            zip.get(offset + 46, name);
+            final var entryName = new String(name, StandardCharsets.UTF_8);
+            entries.putIfAbsent(entryName, new Entry(entryName, method, (int) compressedSize, (int) size, (int) localHeaderOffset));
+
+            offset += 46 + nameLength + extraLength + commentLength;
+        }
+        return entries;
+    }
+
+    private static int findEndHeader(ByteBuffer zip) {
+        final int last = zip.limit() - 22;
+        final int first = Math.max(0, last - 0xFFFF);
+        for (int offset = last; offset >= first; offset--) {
+            if (zip.getInt(offset) == END_HEADER) return offset;
+        }
+        return -1;
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) throw new IOException("ModuleReader for " + location + " is closed");
+    }
+}
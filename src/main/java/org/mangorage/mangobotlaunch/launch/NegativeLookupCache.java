@@ -0,0 +1,52 @@
+package org.mangorage.mangobotlaunch.launch;
+
+import java.util.Arrays;
+
+/**
+ * Bounded, lossy set of class names the parent could not find. Direct mapped, a name takes the slot its hash picks
+ * and pushes out whatever was there, so a lookup is one array read and one compare and never locks.
+ * <p>
+ * Slots are read and written without synchronization, which is fine as Strings are immutable: a reader sees either
+ * a name or null, at worst a stale one that just misses.
+ */
+final class NegativeLookupCache {
+    private final String[] slots;
+    private final int mask;
+
+    NegativeLookupCache(int size) {
+        int capacity = 16;
+        while (capacity < size && capacity < (1 << 24)) capacity <<= 1;
+        this.slots = new String[capacity];
+        this.mask = capacity - 1;
+    }
+
+    boolean contains(String name) {
+        final String slot = slots[index(name)];
+        return slot != null && (slot == name || slot.equals(name));
+    }
+
+    void add(String name) {
+        slots[index(name)] = name;
+    }
+
+    void clear() {
+        Arrays.fill(slots, null);
+    }
+
+    /**
+     * @return the exception for a cached miss, without a stack trace as filling one in costs more than the lookup
+     */
+    static ClassNotFoundException missing(String name) {
+        return new ClassNotFoundException(name) {
+            @Override
+            public synchronized Throwable fillInStackTrace() {
+                return this;
+            }
+        };
+    }
+
+    private int index(String name) {
+        final int h = name.hashCode();
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
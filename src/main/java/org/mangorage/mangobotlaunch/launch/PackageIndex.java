@@ -0,0 +1,100 @@
+package org.mangorage.mangobotlaunch.launch;
+
+import java.util.Map;
+
+/**
+ * Immutable package name lookup, built once the module graph is final.
+ * <p>
+ * Lookups hash and compare a range of a class or resource name in place, treating '/' like '.', so finding the
+ * owner of a name never creates the package string. Open addressing with linear probing at a load factor of at
+ * most one half, the stored hashes mean a probe past another package is a single int compare.
+ */
+final class PackageIndex<T> {
+    private final String[] keys;
+    private final int[] hashes;
+    private final Object[] values;
+    private final int mask;
+    private final int size;
+
+    PackageIndex(Map<String, ? extends T> packages) {
+        int capacity = 2;
+        while (capacity < packages.size() * 2) capacity <<= 1;
+
+        this.keys = new String[capacity];
+        this.hashes = new int[capacity];
+        this.values = new Object[capacity];
+        this.mask = capacity - 1;
+        this.size = packages.size();
+
+        packages.forEach((pkg, value) -> {
+            final int hash = hash(pkg, 0, pkg.length());
+            int slot = hash & mask;
+            while (keys[slot] != null) slot = (slot + 1) & mask;
+            keys[slot] = pkg;
+            hashes[slot] = hash;
+            values[slot] = value;
+        });
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    T get(String pkg) {
+        return get(pkg, 0, pkg.length());
+    }
+
+    /**
+     * @return the value of the package spelled by name[start, end), with '/' read as '.'
+     */
+    @SuppressWarnings("unchecked")
+    T get(CharSequence name, int start, int end) {
+        if (size == 0) return null;
+
+        final int hash = hash(name, start, end);
+        int slot = hash & mask;
+        String key;
+        while ((key = keys[slot]) != null) {
+            if (hashes[slot] == hash && matches(key, name, start, end)) return (T) values[slot];
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * @param cn a binary class name, e.g. a.b.C
+     * @return the value of its package, null for the unnamed package
+     */
+    T getForClass(String cn) {
+        final int pos = cn.lastIndexOf('.');
+        return pos < 0 ? null : get(cn, 0, pos);
+    }
+
+    /**
+     * @param name a resource name, e.g. a/b/c.txt
+     * @return the value of its package, null for root resources and directories
+     */
+    T getForResource(String name) {
+        final int index = name.lastIndexOf('/');
+        return (index == -1 || index == name.length() - 1) ? null : get(name, 0, index);
+    }
+
+    // Same as String.hashCode over the dotted form, spread so the low bits pick the slot
+    private static int hash(CharSequence name, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            final char c = name.charAt(i);
+            h = 31 * h + (c == '/' ? '.' : c);
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean matches(String key, CharSequence name, int start, int end) {
+        if (key.length() != end - start) return false;
+        for (int i = 0; i < key.length(); i++) {
+            final char c = name.charAt(start + i);
+            if (key.charAt(i) != (c == '/' ? '.' : c)) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,413 @@
+package org.mangorage.mangobotlaunch.launch;
+
+import org.mangorage.bootstrap.api.logging.IDeferredMangoLogger;
+import org.mangorage.bootstrap.api.logging.ILoggerFactory;
+import org.mangorage.mangobotlaunch.api.plugin.PluginLayersMXBean;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.module.Configuration;
+import java.lang.module.ModuleDescriptor;
+import java.lang.module.ModuleFinder;
+import java.lang.module.ModuleReference;
+import java.lang.ref.Cleaner;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Libraries in one base layer, every plugin in a child layer with its own {@link MangoLoaderImpl}.
+ * <p>
+ * A plugin layer's parents are the layers of the plugins it requires plus the base layer, and its loader delegates
+ * the packages of those plugins to their loaders. {@link #getLayer()} is an empty layer over every plugin layer, so
+ * services are found through it as if everything was in one layer. Plugin loaders share the base loader's
+ * transformers and configurators, adding those their plugin provides, so transformers see every class and
+ * configurators can name library and required plugin modules as children.
+ * <p>
+ * Reloading a plugin defines it again from plugins/, along with the plugins requiring it, and only once that worked
+ * swaps them in and retires the old loaders. A failed reload leaves the old layers in place. Nothing hands the new
+ * layers to the bot: the entrypoint was looked up once at launch, so code holding classes from the old layers keeps
+ * using them and callers have to look services up again through {@link #getLayer()}. Retired loaders stop adding
+ * transformers and configurators but keep their jars open, so that code goes on loading classes, until the loader
+ * is unreachable.
+ */
+final class PluginLayers implements PluginLayersMXBean {
+    private static final IDeferredMangoLogger LOGGER = ILoggerFactory.getDefault().getWrappedProvider("slf4j", PluginLayers.class);
+    private static final Cleaner RETIRED = Cleaner.create();
+
+    private record Plugin(String name, Path jar, Set<String> requires) {}
+
+    private record Loaded(Plugin plugin, ModuleLayer layer, MangoLoaderImpl loader) {}
+
+    private final ModuleLayer baseLayer;
+    private final MangoLoaderImpl baseLoader;
+    private final Path pluginsPath;
+    private final Map<String, Loaded> loaded = new LinkedHashMap<>();
+    private final Map<String, Long> lastReloadNanos = new ConcurrentHashMap<>();
+    private final AtomicLong reloads = new AtomicLong();
+    private final long setupNanos;
+
+    private volatile ModuleLayer layer;
+    // Set once startup is over, loaders of later reloads end their startup work right after they are defined
+    private boolean startupFinished = false;
+    private boolean keepClassBytesCache = false;
+    private ObjectName objectName;
+    private WatchService watchService;
+
+    private PluginLayers(ModuleLayer baseLayer, MangoLoaderImpl baseLoader, Path pluginsPath, long start) {
+        this.baseLayer = baseLayer;
+        this.baseLoader = baseLoader;
+        this.pluginsPath = pluginsPath;
+
+        for (Plugin plugin : sort(findPlugins(pluginsPath).values())) {
+            define(plugin, loaded);
+        }
+        this.layer = aggregate(loaded);
+        this.setupNanos = System.nanoTime() - start;
+        LOGGER.get().info("Defined " + loaded.size() + " plugin layers in " + TimeUnit.NANOSECONDS.toMillis(setupNanos) + " ms");
+    }
+
+    /**
+     * @param libraries the library jars and the module names to resolve from them
+     */
+    static PluginLayers create(ModuleLayer parent, Collection<Path> libraries, Set<String> libraryNames, Path pluginsPath) {
+        final long start = System.nanoTime();
+
+        final var configuration = Configuration.resolve(
+                ModuleFinder.of(libraries.toArray(Path[]::new)),
+                List.of(parent.configuration()),
+                ModuleFinder.of(),
+                libraryNames
+        );
+        final var loader = new MangoLoaderImpl(configuration.modules(), Thread.currentThread().getContextClassLoader());
+        final var controller = ModuleLayer.defineModules(configuration, List.of(parent), name -> loader);
+        withContextLoader(loader, () -> loader.load(controller.layer(), controller));
+
+        return new PluginLayers(controller.layer(), loader, pluginsPath, start);
+    }
+
+    /**
+     * @return an empty layer whose parents are every plugin layer, replaced on each reload
+     */
+    ModuleLayer getLayer() {
+        return layer;
+    }
+
+    MangoLoaderImpl getBaseLoader() {
+        return baseLoader;
+    }
+
+    /**
+     * Starts preloading in the base loader and every plugin loader, see {@link MangoLoaderImpl#startPreloading()}.
+     */
+    synchronized void startPreloading() {
+        baseLoader.startPreloading();
+        loaded.values().forEach(plugin -> plugin.loader().startPreloading());
+    }
+
+    /**
+     * Saves the preload lists, stops prefetching and, unless keepClassBytesCache, drops the class bytes caches of the
+     * base loader and every plugin loader, and of those later reloads define.
+     */
+    synchronized void finishStartup(boolean keepClassBytesCache) {
+        this.startupFinished = true;
+        this.keepClassBytesCache = keepClassBytesCache;
+        finishStartup(baseLoader);
+        loaded.values().forEach(plugin -> finishStartup(plugin.loader()));
+    }
+
+    private void finishStartup(MangoLoaderImpl loader) {
+        loader.savePreloadList();
+        loader.stopPrefetching();
+        if (!keepClassBytesCache) loader.dropClassBytesCache();
+    }
+
+    @Override
+    public synchronized List<String> getPlugins() {
+        return List.copyOf(loaded.keySet());
+    }
+
+    @Override
+    public long getSetupNanos() {
+        return setupNanos;
+    }
+
+    @Override
+    public long getReloadCount() {
+        return reloads.get();
+    }
+
+    @Override
+    public Map<String, Long> getLastReloadNanos() {
+        return new TreeMap<>(lastReloadNanos);
+    }
+
+    @Override
+    public synchronized long reload(String plugin) {
+        final long start = System.nanoTime();
+
+        final var available = findPlugins(pluginsPath);
+        if (!available.containsKey(plugin) && !loaded.containsKey(plugin))
+            throw new IllegalArgumentException("Unknown plugin " + plugin);
+
+        // The plugin and everything requiring it, directly or not
+        final Set<String> affected = new LinkedHashSet<>();
+        affected.add(plugin);
+        boolean grew = true;
+        while (grew) {
+            grew = false;
+            for (Loaded candidate : loaded.values()) {
+                if (!affected.contains(candidate.plugin().name())
+                        && candidate.plugin().requires().stream().anyMatch(affected::contains)) {
+                    grew |= affected.add(candidate.plugin().name());
+                }
+            }
+        }
+
+        // Everything new is defined next to the old layers, which stay in use until it all worked
+        final Map<String, Loaded> next = new LinkedHashMap<>(loaded);
+        affected.forEach(next::remove);
+        final List<Plugin> rebuild = new ArrayList<>();
+        for (String name : affected) {
+            if (available.containsKey(name)) rebuild.add(available.get(name));
+        }
+
+        final ModuleLayer nextLayer;
+        try {
+            for (Plugin rebuilt : sort(rebuild)) {
+                define(rebuilt, next);
+            }
+            nextLayer = aggregate(next);
+        } catch (RuntimeException | Error e) {
+            for (String name : affected) {
+                final var failed = next.get(name);
+                if (failed != null) close(name, failed);
+            }
+            throw e;
+        }
+
+        final List<Loaded> old = new ArrayList<>();
+        for (String name : affected) {
+            final var previous = loaded.get(name);
+            if (previous != null) old.add(previous);
+        }
+        loaded.clear();
+        loaded.putAll(next);
+        layer = nextLayer;
+        old.forEach(previous -> retire(previous.plugin().name(), previous));
+
+        final long time = System.nanoTime() - start;
+        reloads.incrementAndGet();
+        lastReloadNanos.put(plugin, time);
+        LOGGER.get().info("Reloaded plugin " + plugin + " (" + affected.size() + " layers) in " + TimeUnit.NANOSECONDS.toMillis(time)
+                + " ms, startup took " + TimeUnit.NANOSECONDS.toMillis(setupNanos) + " ms");
+        return time;
+    }
+
+    /**
+     * Reloads a plugin whenever its jar in plugins/ is created or modified, events within debounceMillis are merged.
+     */
+    synchronized void watch(long debounceMillis) throws IOException {
+        if (watchService != null) return;
+        watchService = pluginsPath.getFileSystem().newWatchService();
+        pluginsPath.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+
+        final var service = watchService;
+        final var thread = new Thread(() -> {
+            try {
+                while (true) {
+                    final Set<Path> changed = new HashSet<>();
+                    var key = service.take();
+                    while (key != null) {
+                        for (WatchEvent<?> event : key.pollEvents()) {
+                            if (event.context() instanceof Path path && path.toString().endsWith(".jar")) {
+                                changed.add(pluginsPath.resolve(path));
+                            }
+                        }
+                        key.reset();
+                        // Copying a jar fires several events, wait until they stop
+                        key = service.poll(debounceMillis, TimeUnit.MILLISECONDS);
+                    }
+                    changed.forEach(this::reloadJar);
+                }
+            } catch (InterruptedException | ClosedWatchServiceException ignored) {
+            }
+        }, "MangoBot-PluginWatcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void register() {
+        try {
+            objectName = new ObjectName("org.mangorage.mangobotlaunch:type=PluginLayers");
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        } catch (JMException | RuntimeException e) {
+            objectName = null;
+            LOGGER.get().info("Failed to register plugin layers MBean cause -> " + e);
+        }
+    }
+
+    private void reloadJar(Path jar) {
+        try {
+            final var references = ModuleFinder.of(jar).findAll();
+            for (ModuleReference reference : references) {
+                reload(reference.descriptor().name());
+            }
+        } catch (RuntimeException e) {
+            LOGGER.get().info("Failed to reload plugin " + jar + " cause -> " + e);
+        }
+    }
+
+    // The old classes may still be running, their jars are closed once nothing references the loader
+    private static void retire(String name, Loaded plugin) {
+        final var modules = plugin.loader().retire();
+        RETIRED.register(plugin.loader(), () -> {
+            try {
+                modules.close();
+            } catch (IOException e) {
+                LOGGER.get().info("Failed to close modules of retired plugin " + name + " cause -> " + e);
+            }
+        });
+    }
+
+    private static void close(String name, Loaded plugin) {
+        try {
+            plugin.loader().close();
+        } catch (IOException e) {
+            LOGGER.get().info("Failed to close loader of plugin " + name + " cause -> " + e);
+        }
+    }
+
+    /**
+     * Defines plugin over the layers of its requires in plugins, then adds it there.
+     */
+    private void define(Plugin plugin, Map<String, Loaded> plugins) {
+        final List<ModuleLayer> parents = new ArrayList<>();
+        final Map<String, ClassLoader> remote = new HashMap<>();
+        for (String required : transitiveRequires(plugin, plugins)) {
+            final var dependency = plugins.get(required);
+            if (dependency == null) continue;
+            if (plugin.requires().contains(required)) parents.add(dependency.layer());
+            dependency.layer().modules().forEach(module -> module.getPackages().forEach(pkg -> remote.put(pkg, dependency.loader())));
+        }
+        parents.add(baseLayer);
+
+        final var configuration = Configuration.resolve(
+                ModuleFinder.of(plugin.jar()),
+                parents.stream().map(ModuleLayer::configuration).toList(),
+                ModuleFinder.of(),
+                Set.of(plugin.name())
+        );
+        final var loader = new MangoLoaderImpl(configuration.modules(), baseLoader, remote, baseLoader);
+        final var controller = ModuleLayer.defineModules(configuration, parents, name -> loader);
+        try {
+            withContextLoader(loader, () -> loader.load(controller.layer(), controller));
+        } catch (RuntimeException | Error e) {
+            close(plugin.name(), new Loaded(plugin, controller.layer(), loader));
+            throw e;
+        }
+
+        if (startupFinished) finishStartup(loader);
+        plugins.put(plugin.name(), new Loaded(plugin, controller.layer(), loader));
+    }
+
+    private static Set<String> transitiveRequires(Plugin plugin, Map<String, Loaded> plugins) {
+        final Set<String> result = new LinkedHashSet<>();
+        final List<String> pending = new ArrayList<>(plugin.requires());
+        while (!pending.isEmpty()) {
+            final var name = pending.remove(pending.size() - 1);
+            final var dependency = plugins.get(name);
+            if (dependency != null && result.add(name)) pending.addAll(dependency.plugin().requires());
+        }
+        return result;
+    }
+
+    private ModuleLayer aggregate(Map<String, Loaded> plugins) {
+        final List<ModuleLayer> parents = new ArrayList<>();
+        plugins.values().forEach(plugin -> parents.add(plugin.layer()));
+        if (parents.isEmpty()) parents.add(baseLayer);
+
+        final var configuration = Configuration.resolve(
+                ModuleFinder.of(),
+                parents.stream().map(ModuleLayer::configuration).toList(),
+                ModuleFinder.of(),
+                Set.of()
+        );
+        return ModuleLayer.defineModules(configuration, parents, name -> baseLoader).layer();
+    }
+
+    private static Map<String, Plugin> findPlugins(Path pluginsPath) {
+        final Map<String, Plugin> plugins = new TreeMap<>();
+        final Map<String, ModuleDescriptor> descriptors = new HashMap<>();
+        for (ModuleReference reference : ModuleFinder.of(pluginsPath).findAll()) {
+            if (reference.location().isEmpty()) continue;
+            descriptors.put(reference.descriptor().name(), reference.descriptor());
+            plugins.put(reference.descriptor().name(), new Plugin(reference.descriptor().name(), Path.of(reference.location().get()), Set.of()));
+        }
+
+        // Only requires on other plugins matter for layering, libraries are all in the base layer
+        plugins.replaceAll((name, plugin) -> {
+            final Set<String> requires = new HashSet<>();
+            descriptors.get(name).requires().forEach(require -> {
+                if (plugins.containsKey(require.name())) requires.add(require.name());
+            });
+            return new Plugin(name, plugin.jar(), Set.copyOf(requires));
+        });
+        return plugins;
+    }
+
+    /**
+     * @return plugins ordered so required plugins come first, plugins in a requires cycle are dropped
+     */
+    private List<Plugin> sort(Collection<Plugin> plugins) {
+        final Map<String, Plugin> pending = new LinkedHashMap<>();
+        plugins.forEach(plugin -> pending.put(plugin.name(), plugin));
+
+        final List<Plugin> sorted = new ArrayList<>();
+        boolean progress = true;
+        while (!pending.isEmpty() && progress) {
+            progress = false;
+            for (var iterator = pending.values().iterator(); iterator.hasNext(); ) {
+                final var plugin = iterator.next();
+                if (plugin.requires().stream().noneMatch(pending::containsKey)) {
+                    sorted.add(plugin);
+                    iterator.remove();
+                    progress = true;
+                }
+            }
+        }
+
+        if (!pending.isEmpty()) {
+            LOGGER.get().info("Skipping plugins with cyclic requires: " + pending.keySet());
+        }
+        return sorted;
+    }
+
+    private static void withContextLoader(ClassLoader loader, Runnable runnable) {
+        final var thread = Thread.currentThread();
+        final var previous = thread.getContextClassLoader();
+        thread.setContextClassLoader(loader);
+        try {
+            runnable.run();
+        } finally {
+            thread.setContextClassLoader(previous);
+        }
+    }
+}
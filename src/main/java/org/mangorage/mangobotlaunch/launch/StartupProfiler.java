@@ -0,0 +1,172 @@
+package org.mangorage.mangobotlaunch.launch;
+
+import org.mangorage.bootstrap.api.logging.IDeferredMangoLogger;
+import org.mangorage.bootstrap.api.logging.ILoggerFactory;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Times the phases of a boot and counts the jars the dependency scan opens, the module readers the loaders open and
+ * the bytes they read, then writes them as a properties file once the entrypoint's init returns (or at shutdown, if
+ * it never does). Does nothing unless -DSTARTUP_PROFILE=true.
+ * <p>
+ * Phases are keyed by name, a phase entered more than once adds up its time and counts each entry. With
+ * -DSTARTUP_PROFILE_COMPARE=true every key is also logged next to its value from the previous report.
+ */
+public final class StartupProfiler {
+    private static final IDeferredMangoLogger LOGGER = ILoggerFactory.getDefault().getWrappedProvider("slf4j", StartupProfiler.class);
+    private static final boolean STARTUP_PROFILE = Boolean.getBoolean("STARTUP_PROFILE");
+    private static final String STARTUP_PROFILE_FILE = System.getProperty("STARTUP_PROFILE_FILE", ".cache/startup-profile.properties");
+    private static final boolean STARTUP_PROFILE_COMPARE = Boolean.getBoolean("STARTUP_PROFILE_COMPARE");
+
+    /**
+     * Ends its phase when closed.
+     */
+    interface Phase extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private record Timing(long nanos, int count) {
+        Timing add(long elapsed) {
+            return new Timing(nanos + elapsed, count + 1);
+        }
+    }
+
+    private static final Phase NONE = () -> {};
+    private static final Map<String, Timing> PHASES = new LinkedHashMap<>();
+    private static final LongAdder JARS_OPENED = new LongAdder();
+    private static final LongAdder MODULE_READERS_OPENED = new LongAdder();
+    private static final LongAdder BYTES_READ = new LongAdder();
+    private static final LongAdder CLASSES_READ = new LongAdder();
+    private static final AtomicBoolean FINISHED = new AtomicBoolean();
+    private static final long START = System.nanoTime();
+
+    static {
+        if (STARTUP_PROFILE) Runtime.getRuntime().addShutdownHook(new Thread(StartupProfiler::finish, "MangoBot-Startup-Profile"));
+    }
+
+    private StartupProfiler() {}
+
+    /**
+     * Use with try-with-resources, the phase lasts until the returned handle is closed.
+     */
+    static Phase phase(String name) {
+        if (!STARTUP_PROFILE || FINISHED.get()) return NONE;
+        final long start = System.nanoTime();
+        return () -> {
+            final long elapsed = System.nanoTime() - start;
+            synchronized (PHASES) {
+                PHASES.merge(name, new Timing(elapsed, 1), (a, b) -> a.add(elapsed));
+            }
+        };
+    }
+
+    /**
+     * Counts a jar opened outside the loaders, by the dependency scan.
+     */
+    public static void jarOpened() {
+        if (STARTUP_PROFILE) JARS_OPENED.increment();
+    }
+
+    static void moduleReaderOpened() {
+        if (STARTUP_PROFILE) MODULE_READERS_OPENED.increment();
+    }
+
+    static void classRead(int bytes) {
+        if (!STARTUP_PROFILE) return;
+        BYTES_READ.add(bytes);
+        CLASSES_READ.increment();
+    }
+
+    /**
+     * Writes the report, only the first call does anything.
+     */
+    static void finish() {
+        if (!STARTUP_PROFILE || !FINISHED.compareAndSet(false, true)) return;
+
+        final Map<String, String> report = new LinkedHashMap<>();
+        // From the first phase, which is setup
+        report.put("boot.us", Long.toString((System.nanoTime() - START) / 1_000));
+        report.put("jvm.uptime.ms", Long.toString(ManagementFactory.getRuntimeMXBean().getUptime()));
+        report.put("jars.opened", Long.toString(JARS_OPENED.sum()));
+        report.put("module.readers.opened", Long.toString(MODULE_READERS_OPENED.sum()));
+        report.put("classes.read", Long.toString(CLASSES_READ.sum()));
+        report.put("bytes.read", Long.toString(BYTES_READ.sum()));
+        synchronized (PHASES) {
+            PHASES.forEach((name, timing) -> {
+                report.put("phase." + name + ".us", Long.toString(timing.nanos() / 1_000));
+                if (timing.count() > 1) report.put("phase." + name + ".count", Integer.toString(timing.count()));
+            });
+        }
+
+        final var file = Path.of(STARTUP_PROFILE_FILE);
+        if (STARTUP_PROFILE_COMPARE) compare(file, report);
+        save(file, report);
+    }
+
+    private static void compare(Path file, Map<String, String> report) {
+        if (!Files.isRegularFile(file)) {
+            LOGGER.get().info("No previous startup profile at " + file + " to compare with");
+            return;
+        }
+
+        final var previous = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            previous.load(reader);
+        } catch (IOException e) {
+            LOGGER.get().info("Failed to read previous startup profile " + file + " cause -> " + e);
+            return;
+        }
+
+        LOGGER.get().info("Startup profile compared with the previous boot");
+        report.forEach((key, value) -> {
+            final var before = previous.getProperty(key);
+            if (before == null) {
+                LOGGER.get().info(key + " -> " + value + " (new)");
+                return;
+            }
+            try {
+                final long delta = Long.parseLong(value) - Long.parseLong(before);
+                LOGGER.get().info(key + " -> " + value + " (" + (delta >= 0 ? "+" : "") + delta + ")");
+            } catch (NumberFormatException e) {
+                LOGGER.get().info(key + " -> " + value + " (was " + before + ")");
+            }
+        });
+    }
+
+    private static void save(Path file, Map<String, String> report) {
+        final var builder = new StringBuilder("# MangoBot startup profile, units are in the key suffix\n");
+        report.forEach((key, value) -> builder.append(key).append('=').append(value).append('\n'));
+
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            final var temp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+            try {
+                Files.writeString(temp, builder, StandardCharsets.UTF_8);
+                try {
+                    Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            LOGGER.get().info("Startup profile written to " + file);
+        } catch (IOException e) {
+            LOGGER.get().info("Failed to write startup profile " + file + " cause -> " + e);
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package org.mangorage.mangobotlaunch.launch;
+
+import org.mangorage.bootstrap.api.logging.IDeferredMangoLogger;
+import org.mangorage.bootstrap.api.logging.ILoggerFactory;
+import org.mangorage.bootstrap.api.transformer.IClassTransformer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.module.ResolvedModule;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Content addressed, on-disk cache of {@link ClassTransformers} results.
+ * <p>
+ * Entries live under a directory named after a fingerprint of the registered transformers, so adding, removing
+ * or updating a transformer starts a fresh cache. Each entry is keyed by the class name and its input bytes and
+ * holds either the rewritten bytes or a marker saying no transformer touched the class. Entries carry a CRC32 and
+ * are dropped when it does not match, and the whole directory is kept under a byte budget by evicting the least
+ * recently used entries.
+ */
+final class TransformerCache {
+    private static final IDeferredMangoLogger LOGGER = ILoggerFactory.getDefault().getWrappedProvider("slf4j", TransformerCache.class);
+
+    private static final int MAGIC = 0x4D544331; // MTC1
+    private static final byte NO_REWRITE = 0;
+    private static final byte REWRITE = 1;
+
+    /**
+     * @param transformerName the transformer that rewrote the class, null for {@link #NO_REWRITE} entries
+     * @param classData       the rewritten bytes, null for {@link #NO_REWRITE} entries
+     */
+    record Entry(String transformerName, byte[] classData) {
+        boolean rewritten() {
+            return classData != null;
+        }
+    }
+
+    private final Path root;
+    private final long maxBytes;
+    private final AtomicLong size = new AtomicLong();
+    private final Object evictionLock = new Object();
+
+    private volatile Path directory;
+    private boolean sizeKnown = false;
+
+    TransformerCache(Path root, long maxBytes) {
+        this.root = root;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Must be called whenever the transformer list changes.
+     */
+    void setTransformers(List<IClassTransformer> transformers) {
+        synchronized (evictionLock) {
+            directory = root.resolve(fingerprint(transformers));
+            if (sizeKnown) return;
+
+            // Budget covers every fingerprint, stale ones are never touched again and get evicted first
+            sizeKnown = true;
+            try {
+                Files.createDirectories(root);
+                try (Stream<Path> files = Files.walk(root)) {
+                    files.filter(Files::isRegularFile).forEach(file -> size.addAndGet(file.toFile().length()));
+                }
+            } catch (IOException | UncheckedIOException e) {
+                LOGGER.get().info("Failed to prepare transformer cache " + root + " cause -> " + e);
+            }
+        }
+    }
+
+    /**
+     * @return where the result for this class belongs, null until transformers have been registered
+     */
+    Path locate(String name, byte[] classData) {
+        final var dir = directory;
+        if (dir == null) return null;
+
+        final var digest = sha256();
+        digest.update(name.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(classData);
+        final var key = HexFormat.of().formatHex(digest.digest());
+        return dir.resolve(key.substring(0, 2)).resolve(key + ".bin");
+    }
+
+    Entry get(Path file) {
+        final byte[] stored;
+        try {
+            stored = Files.readAllBytes(file);
+        } catch (IOException e) {
+            // Usually NoSuchFileException, simply a miss
+            return null;
+        }
+
+        final var entry = decode(stored);
+        if (entry == null) {
+            // Corrupted or truncated, drop it and transform again
+            if (deleteQuietly(file)) size.addAndGet(-stored.length);
+            return null;
+        }
+
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException ignored) {}
+        return entry;
+    }
+
+    void put(Path file, Entry entry) {
+        final byte[] encoded = encode(entry);
+        if (encoded.length > maxBytes) return;
+
+        // An entry written again replaces its file, only the difference counts against the budget
+        final long replaced = file.toFile().length();
+        try {
+            Files.createDirectories(file.getParent());
+            final var temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+            try {
+                Files.write(temp, encoded);
+                try {
+                    Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            return;
+        }
+
+        if (size.addAndGet(encoded.length - replaced) > maxBytes) {
+            evict();
+        }
+    }
+
+    // Least recently used first, hits refresh the last modified time, down to 80% of the budget
+    private void evict() {
+        synchronized (evictionLock) {
+            if (size.get() <= maxBytes) return;
+
+            record CachedFile(Path path, long size, long lastUsed) {}
+            final List<CachedFile> files = new ArrayList<>();
+            try (Stream<Path> walk = Files.walk(root)) {
+                walk.filter(Files::isRegularFile).forEach(path -> {
+                    try {
+                        final var attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                        files.add(new CachedFile(path, attributes.size(), attributes.lastModifiedTime().toMillis()));
+                    } catch (IOException ignored) {}
+                });
+            } catch (IOException | UncheckedIOException e) {
+                return;
+            }
+
+            long total = files.stream().mapToLong(CachedFile::size).sum();
+            final long target = maxBytes * 8 / 10;
+            files.sort(Comparator.comparingLong(CachedFile::lastUsed));
+            for (CachedFile file : files) {
+                if (total <= target) break;
+                if (deleteQuietly(file.path())) total -= file.size();
+            }
+            size.set(total);
+        }
+    }
+
+    private static byte[] encode(Entry entry) {
+        final byte[] payload = entry.rewritten() ? entry.classData() : new byte[0];
+        final var crc = new CRC32();
+        crc.update(payload);
+
+        final var bytes = new ByteArrayOutputStream(payload.length + 64);
+        try (var out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeByte(entry.rewritten() ? REWRITE : NO_REWRITE);
+            out.writeUTF(entry.rewritten() ? entry.transformerName() : "");
+            out.writeInt(payload.length);
+            out.writeLong(crc.getValue());
+            out.write(payload);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Entry decode(byte[] stored) {
+        try (var in = new DataInputStream(new ByteArrayInputStream(stored))) {
+            if (in.readInt() != MAGIC) return null;
+            final byte kind = in.readByte();
+            final String transformerName = in.readUTF();
+            final int length = in.readInt();
+            final long expected = in.readLong();
+            if (length < 0 || length != in.available()) return null;
+
+            final byte[] payload = in.readNBytes(length);
+            final var crc = new CRC32();
+            crc.update(payload);
+            if (crc.getValue() != expected) return null;
+
+            return switch (kind) {
+                case NO_REWRITE -> new Entry(null, null);
+                case REWRITE -> new Entry(transformerName, payload);
+                default -> null;
+            };
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Class, name and version of every transformer, plus the size and modification time of the jar it came from
+     * so a rebuilt transformer without a version bump still invalidates the cache.
+     */
+    private static String fingerprint(List<IClassTransformer> transformers) {
+        final var digest = sha256();
+        for (IClassTransformer transformer : transformers) {
+            final var type = transformer.getClass();
+            final var module = type.getModule();
+
+            final var builder = new StringBuilder()
+                    .append(type.getName()).append('|')
+                    .append(transformer.getName()).append('|');
+            if (module.getDescriptor() != null) {
+                builder.append(module.getDescriptor().toNameAndVersion());
+            }
+            if (module.getLayer() != null) {
+                module.getLayer().configuration()
+                        .findModule(module.getName())
+                        .map(ResolvedModule::reference)
+                        .flatMap(reference -> reference.location())
+                        .ifPresent(location -> builder.append('|').append(describeLocation(location)));
+            }
+
+            digest.update(builder.append('\n').toString().getBytes(StandardCharsets.UTF_8));
+        }
+        return HexFormat.of().formatHex(digest.digest(), 0, 8);
+    }
+
+    private static String describeLocation(URI location) {
+        if (!"file".equals(location.getScheme())) return location.toString();
+        try {
+            final var attributes = Files.readAttributes(Path.of(location), BasicFileAttributes.class);
+            return location + "@" + attributes.size() + ":" + attributes.lastModifiedTime().toMillis();
+        } catch (IOException | RuntimeException e) {
+            return location.toString();
+        }
+    }
+
+    private static boolean deleteQuietly(Path path) {
+        try {
+            return Files.deleteIfExists(path);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
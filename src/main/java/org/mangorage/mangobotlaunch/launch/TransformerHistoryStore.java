@@ -0,0 +1,198 @@
+package org.mangorage.mangobotlaunch.launch;
+
+import org.mangorage.bootstrap.api.transformer.ITransformerResultHistory;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Thread safe, size bounded home of the transformer history.
+ * <p>
+ * Class bytes are stored once per distinct content and shared between every entry referring to them,
+ * optionally deflated. When the stored bytes exceed the budget, the history of the least recently
+ * transformed or queried classes is dropped first.
+ */
+final class TransformerHistoryStore {
+    // Rough cost of an entry and its list slot, keeps a flood of tiny classes within budget as well
+    private static final int ENTRY_OVERHEAD = 96;
+
+    /**
+     * Shared class bytes, deflated when that made them smaller.
+     */
+    static final class Blob {
+        private final ByteBuffer key;
+        private final byte[] stored;
+        private final int length;
+        private final boolean compressed;
+        private int references = 0;
+
+        private Blob(ByteBuffer key, byte[] stored, int length, boolean compressed) {
+            this.key = key;
+            this.stored = stored;
+            this.length = length;
+            this.compressed = compressed;
+        }
+
+        byte[] bytes() {
+            if (!compressed) return stored;
+
+            final var inflater = new Inflater();
+            try {
+                inflater.setInput(stored);
+                final byte[] data = new byte[length];
+                int read = 0;
+                while (read < length && !inflater.finished()) {
+                    read += inflater.inflate(data, read, length - read);
+                }
+                return data;
+            } catch (DataFormatException e) {
+                throw new IllegalStateException(e);
+            } finally {
+                inflater.end();
+            }
+        }
+
+        private long footprint() {
+            return stored.length + 64L;
+        }
+    }
+
+    private record Recorded(ITransformerResultHistory entry, Blob[] blobs) {}
+
+    private final long maxBytes;
+    private final boolean compress;
+    private final Object lock = new Object();
+    private final Map<ByteBuffer, Blob> blobs = new HashMap<>();
+    private final LinkedHashMap<String, List<Recorded>> histories = new LinkedHashMap<>(256, 0.75f, true);
+    private long bytes = 0;
+    private long evictedClasses = 0;
+
+    TransformerHistoryStore(long maxBytes, boolean compress) {
+        this.maxBytes = maxBytes;
+        this.compress = compress;
+    }
+
+    /**
+     * @return a blob for data, to be passed to {@link #add(String, ITransformerResultHistory, Blob...)}
+     */
+    Blob intern(byte[] data) {
+        final var key = ByteBuffer.wrap(sha256(data));
+        synchronized (lock) {
+            final var existing = blobs.get(key);
+            if (existing != null) return existing;
+        }
+
+        // Deflating happens outside the lock, a racing thread may do the same work but only one blob is kept
+        final byte[] deflated = compress ? deflate(data) : null;
+        final var blob = deflated != null && deflated.length < data.length
+                ? new Blob(key, deflated, data.length, true)
+                : new Blob(key, data, data.length, false);
+
+        synchronized (lock) {
+            final var existing = blobs.get(key);
+            if (existing != null) return existing;
+            blobs.put(key, blob);
+            bytes += blob.footprint();
+            return blob;
+        }
+    }
+
+    /**
+     * Appends entry to the history of className, the blobs are those entry reads its bytes from.
+     */
+    void add(String className, ITransformerResultHistory entry, Blob... used) {
+        synchronized (lock) {
+            for (Blob blob : used) {
+                if (blobs.get(blob.key) != blob) {
+                    // Dropped by an eviction since it was interned
+                    blobs.put(blob.key, blob);
+                    bytes += blob.footprint();
+                }
+                blob.references++;
+            }
+            histories.computeIfAbsent(className, k -> new ArrayList<>()).add(new Recorded(entry, used));
+            bytes += ENTRY_OVERHEAD;
+
+            evict(className);
+        }
+    }
+
+    List<ITransformerResultHistory> get(String className) {
+        synchronized (lock) {
+            final var history = histories.get(className);
+            if (history == null) return List.of();
+            final List<ITransformerResultHistory> entries = new ArrayList<>(history.size());
+            for (Recorded recorded : history) {
+                entries.add(recorded.entry());
+            }
+            return entries;
+        }
+    }
+
+    long getStoredBytes() {
+        synchronized (lock) {
+            return bytes;
+        }
+    }
+
+    long getEvictedClassCount() {
+        synchronized (lock) {
+            return evictedClasses;
+        }
+    }
+
+    // The class currently being recorded is never evicted, even when it alone is over budget
+    private void evict(String keep) {
+        final Iterator<Map.Entry<String, List<Recorded>>> iterator = histories.entrySet().iterator();
+        while (bytes > maxBytes && iterator.hasNext()) {
+            final var eldest = iterator.next();
+            if (eldest.getKey().equals(keep)) continue;
+
+            iterator.remove();
+            evictedClasses++;
+            for (Recorded recorded : eldest.getValue()) {
+                bytes -= ENTRY_OVERHEAD;
+                for (Blob blob : recorded.blobs()) {
+                    if (--blob.references == 0 && blobs.remove(blob.key, blob)) {
+                        bytes -= blob.footprint();
+                    }
+                }
+            }
+        }
+    }
+
+    private static byte[] deflate(byte[] data) {
+        final var deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            final var out = new ByteArrayOutputStream(data.length / 2 + 64);
+            final byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] sha256(byte[] data) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(data);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
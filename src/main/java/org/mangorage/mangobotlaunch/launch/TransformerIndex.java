@@ -0,0 +1,125 @@
+package org.mangorage.mangobotlaunch.launch;
+
+import org.mangorage.bootstrap.api.transformer.IClassTransformer;
+import org.mangorage.mangobotlaunch.api.transformer.TransformerTargets;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Immutable lookup from a class name to the transformers that may want it, in registration order.
+ * Transformers without targets are always included, targeted ones are found through an exact name map,
+ * a package segment trie and, last, their predicates.
+ */
+final class TransformerIndex {
+    private static final int[] NONE = new int[0];
+
+    record Registration(IClassTransformer transformer, TransformerTargets targets) {}
+
+    private record PredicateTarget(int transformer, Predicate<String> predicate) {}
+
+    private static final class PackageNode {
+        private final Map<String, PackageNode> children = new HashMap<>();
+        private int[] transformers = NONE;
+    }
+
+    private final IClassTransformer[] transformers;
+    private final List<IClassTransformer> untargeted;
+    private final boolean[] untargetedMask;
+    private final boolean hasTargeted;
+    private final Map<String, int[]> classes = new HashMap<>();
+    private final PackageNode packages = new PackageNode();
+    private final List<PredicateTarget> predicates = new ArrayList<>();
+
+    TransformerIndex(List<Registration> registrations) {
+        this.transformers = new IClassTransformer[registrations.size()];
+        this.untargetedMask = new boolean[registrations.size()];
+
+        final List<IClassTransformer> untargetedList = new ArrayList<>();
+        boolean targeted = false;
+
+        for (int i = 0; i < registrations.size(); i++) {
+            final var registration = registrations.get(i);
+            transformers[i] = registration.transformer();
+
+            final var targets = registration.targets();
+            if (targets == null) {
+                untargetedMask[i] = true;
+                untargetedList.add(registration.transformer());
+                continue;
+            }
+
+            targeted = true;
+            for (String className : targets.classNames()) {
+                classes.merge(className, new int[] {i}, TransformerIndex::concat);
+            }
+            for (String prefix : targets.packagePrefixes()) {
+                PackageNode node = packages;
+                for (String segment : prefix.split("\\.")) {
+                    node = node.children.computeIfAbsent(segment, k -> new PackageNode());
+                }
+                node.transformers = concat(node.transformers, new int[] {i});
+            }
+            for (Predicate<String> predicate : targets.predicates()) {
+                predicates.add(new PredicateTarget(i, predicate));
+            }
+        }
+
+        this.untargeted = List.copyOf(untargetedList);
+        this.hasTargeted = targeted;
+    }
+
+    boolean isEmpty() {
+        return transformers.length == 0;
+    }
+
+    List<IClassTransformer> getTransformers(String className) {
+        if (!hasTargeted) return untargeted;
+
+        boolean[] selected = null;
+
+        final int[] exact = classes.getOrDefault(className, NONE);
+        if (exact.length > 0) selected = select(selected, exact);
+
+        final int lastDot = className.lastIndexOf('.');
+        PackageNode node = packages;
+        int start = 0;
+        while (start <= lastDot) {
+            final int dot = className.indexOf('.', start);
+            node = node.children.get(className.substring(start, dot));
+            if (node == null) break;
+            if (node.transformers.length > 0) selected = select(selected, node.transformers);
+            start = dot + 1;
+        }
+
+        for (PredicateTarget target : predicates) {
+            if ((selected == null || !selected[target.transformer()]) && target.predicate().test(className)) {
+                selected = select(selected, new int[] {target.transformer()});
+            }
+        }
+
+        if (selected == null) return untargeted;
+
+        final List<IClassTransformer> result = new ArrayList<>();
+        for (int i = 0; i < transformers.length; i++) {
+            if (selected[i]) result.add(transformers[i]);
+        }
+        return result;
+    }
+
+    private boolean[] select(boolean[] selected, int[] indices) {
+        if (selected == null) selected = untargetedMask.clone();
+        for (int index : indices) selected[index] = true;
+        return selected;
+    }
+
+    private static int[] concat(int[] a, int[] b) {
+        final int[] result = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+        return result;
+    }
+}
@@ -0,0 +1,97 @@
+package org.mangorage.mangobotlaunch.launch;
+
+import org.mangorage.bootstrap.api.transformer.IClassTransformer;
+import org.mangorage.bootstrap.api.transformer.TransformerFlag;
+import org.mangorage.mangobotlaunch.api.transformer.IPipelineClassTransformer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringJoiner;
+
+/**
+ * Runs consecutive {@link IPipelineClassTransformer}s sharing a codec against a single parsed tree.
+ */
+final class TransformerPipeline {
+
+    /**
+     * @param classData the bytes before this stage, only known when stages are recorded
+     * @param result    the bytes after this stage, only known when stages are recorded
+     */
+    record Stage(IClassTransformer transformer, TransformerFlag flag, byte[] classData, byte[] result) {}
+
+    /**
+     * @param classData the written class, null when no stage rewrote it
+     */
+    record Result(TransformerFlag flag, byte[] classData, String transformerNames, List<Stage> stages) {}
+
+    private TransformerPipeline() {}
+
+    /**
+     * @return the end (exclusive) of the run of pipeline transformers starting at start sharing its codec,
+     * start + 1 when there is nothing to group
+     */
+    static int groupEnd(List<IClassTransformer> transformers, int start) {
+        if (!(transformers.get(start) instanceof IPipelineClassTransformer<?> first)) return start + 1;
+
+        final var codec = first.getCodec();
+        int end = start + 1;
+        while (end < transformers.size()
+                && transformers.get(end) instanceof IPipelineClassTransformer<?> next
+                && codec.equals(next.getCodec())) {
+            end++;
+        }
+        return end;
+    }
+
+    /**
+     * Writing the tree after every stage is only done when recordStages is set, to give the history real bytes.
+     * Parsing and writing are timed under the codec's class name when metrics is set.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> Result run(String name, byte[] classData, List<IClassTransformer> group, boolean recordStages, LoaderMetrics metrics) {
+        final var codec = ((IPipelineClassTransformer<T>) group.get(0)).getCodec();
+        final String codecName = codec.getClass().getName();
+
+        long start = metrics != null ? System.nanoTime() : 0;
+        final T tree = codec.read(name, classData);
+        if (metrics != null) metrics.transformed(codecName, name, false, start);
+
+        final List<Stage> stages = recordStages ? new ArrayList<>(group.size()) : List.of();
+        final var names = new StringJoiner(", ");
+        TransformerFlag flag = TransformerFlag.NO_REWRITE;
+        byte[] current = classData;
+
+        for (IClassTransformer transformer : group) {
+            if (metrics != null) start = System.nanoTime();
+            final var stageFlag = ((IPipelineClassTransformer<T>) transformer).transform(name, tree);
+            if (metrics != null) metrics.transformed(transformer.getName(), name, stageFlag != TransformerFlag.NO_REWRITE, start);
+            if (stageFlag != TransformerFlag.NO_REWRITE) {
+                names.add(transformer.getName());
+                flag = merge(flag, stageFlag);
+            }
+
+            if (recordStages) {
+                final byte[] result = stageFlag == TransformerFlag.NO_REWRITE ? current : codec.write(name, tree);
+                stages.add(new Stage(transformer, stageFlag, current, result));
+                current = result;
+            }
+        }
+
+        if (flag == TransformerFlag.NO_REWRITE) {
+            return new Result(flag, null, null, stages);
+        }
+        if (recordStages) {
+            return new Result(flag, current, names.toString(), stages);
+        }
+
+        if (metrics != null) start = System.nanoTime();
+        final byte[] written = codec.write(name, tree);
+        if (metrics != null) metrics.transformed(codecName, name, true, start);
+        return new Result(flag, written, names.toString(), stages);
+    }
+
+    private static TransformerFlag merge(TransformerFlag a, TransformerFlag b) {
+        if (a == TransformerFlag.FULL_REWRITE || b == TransformerFlag.FULL_REWRITE) return TransformerFlag.FULL_REWRITE;
+        return b;
+    }
+}
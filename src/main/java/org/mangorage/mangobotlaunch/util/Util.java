@@ -3,6 +3,7 @@ package org.mangorage.mangobotlaunch.util;
 import org.mangorage.bootstrap.api.logging.IDeferredMangoLogger;
 import org.mangorage.bootstrap.api.logging.ILoggerFactory;
 import org.mangorage.bootstrap.api.logging.IMangoLogger;
+import org.mangorage.mangobotlaunch.launch.StartupProfiler;
 
 import java.io.File;
 import java.lang.module.ModuleFinder;
@@ -38,6 +39,7 @@ public final class Util {
         }
 
         try {
+            StartupProfiler.jarOpened();
             ModuleFinder finder = ModuleFinder.of(jarFile.toPath());
             Set<ModuleReference> modules = finder.findAll();
 
@@ -2,7 +2,9 @@ package org.mangorage.mangobotlaunch.util.handler;
 
 import org.mangorage.bootstrap.api.dependency.IDependency;
 import org.mangorage.bootstrap.api.util.GsonUtil;
+import org.mangorage.mangobotlaunch.launch.StartupProfiler;
 import org.mangorage.mangobotlaunch.util.Dependencies;
+import org.mangorage.mangobotlaunch.util.Result;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -12,39 +14,134 @@ import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 
 public final class DependencyHandler {
+    private static final boolean PARALLEL_DEPENDENCY_RESOLUTION = Boolean.getBoolean("PARALLEL_DEPENDENCY_RESOLUTION");
+    private static final int DEPENDENCY_RESOLUTION_PARALLELISM = Integer.getInteger("DEPENDENCY_RESOLUTION_PARALLELISM", Runtime.getRuntime().availableProcessors());
 
     public static List<IDependency> scanPackages(Path packagesPath, Path librariesPath) throws IOException {
+        return scanPackages(packagesPath, librariesPath, PARALLEL_DEPENDENCY_RESOLUTION ? DEPENDENCY_RESOLUTION_PARALLELISM : 1);
+    }
 
-        final List<IDependency> results = new ArrayList<>();
+    /**
+     * Resolves every library listed by the jars in packagesPath, each library path is only resolved once.
+     * Results are always in package file name order, then dependency order, regardless of parallelism.
+     *
+     * @param parallelism how many jars to read at once, 1 or less resolves everything on the calling thread
+     */
+    public static List<IDependency> scanPackages(Path packagesPath, Path librariesPath, int parallelism) throws IOException {
+        final List<Path> packages = new ArrayList<>();
 
         try (DirectoryStream<Path> stream = Files.newDirectoryStream(packagesPath)) {
             for (Path entry : stream) {
                 if (Files.isRegularFile(entry)) {
-                    final Dependencies dependenciesList = GsonUtil.get(
-                            Dependencies.class,
-                            readFileFromJar(entry, "installer-data/dependencies.json")
-                    );
-
-                    dependenciesList.dependencies().forEach(dependency -> {
-                        final var result = JarHandler.resolveModuleName(
-                                librariesPath.resolve(dependency.output())
-                        );
-                        results.add(result);
-                    });
+                    packages.add(entry);
                 }
             }
         }
 
+        packages.sort(Comparator.comparing(path -> path.getFileName().toString()));
+
+        final var cache = ModuleNameCache.load(librariesPath.resolve(".cache"));
+        final var results = parallelism <= 1
+                ? scanSequential(packages, librariesPath, cache)
+                : scanParallel(packages, librariesPath, cache, parallelism);
+        cache.save();
+
         return results;
     }
 
+    private static List<IDependency> scanSequential(List<Path> packages, Path librariesPath, ModuleNameCache cache) throws IOException {
+        final List<IDependency> results = new ArrayList<>();
+        final Map<Path, Result> resolved = new HashMap<>();
+
+        for (Path entry : packages) {
+            readDependencies(entry).dependencies().forEach(dependency -> {
+                final var result = resolved.computeIfAbsent(
+                        librariesPath.resolve(dependency.output()).normalize(),
+                        cache::resolve
+                );
+                results.add(result);
+            });
+        }
+
+        return results;
+    }
+
+    private static List<IDependency> scanParallel(List<Path> packages, Path librariesPath, ModuleNameCache cache, int parallelism) throws IOException {
+        final ForkJoinPool pool = new ForkJoinPool(parallelism);
+
+        try {
+            final List<Future<Dependencies>> manifests = packages.stream()
+                    .<Future<Dependencies>>map(entry -> pool.submit(() -> readDependencies(entry)))
+                    .toList();
+
+            final Map<Path, Future<Result>> resolved = new HashMap<>();
+            final List<Future<Result>> ordered = new ArrayList<>();
+
+            for (Future<Dependencies> manifest : manifests) {
+                final Dependencies dependenciesList;
+                try {
+                    dependenciesList = await(manifest);
+                } catch (IOException | RuntimeException e) {
+                    // Report failures in the same order the sequential scan would hit them
+                    awaitAll(ordered);
+                    throw e;
+                }
+
+                dependenciesList.dependencies().forEach(dependency -> {
+                    final var jarPath = librariesPath.resolve(dependency.output()).normalize();
+                    ordered.add(resolved.computeIfAbsent(jarPath, path -> pool.submit(() -> cache.resolve(path))));
+                });
+            }
+
+            return awaitAll(ordered);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static List<IDependency> awaitAll(List<Future<Result>> futures) throws IOException {
+        final List<IDependency> results = new ArrayList<>(futures.size());
+        for (Future<Result> future : futures) {
+            results.add(await(future));
+        }
+        return results;
+    }
+
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while resolving dependencies", e);
+        } catch (ExecutionException e) {
+            final var cause = e.getCause();
+            if (cause instanceof IOException ioException) throw ioException;
+            if (cause instanceof RuntimeException runtimeException) throw runtimeException;
+            if (cause instanceof Error error) throw error;
+            throw new IOException(cause);
+        }
+    }
+
+    private static Dependencies readDependencies(Path jarPath) throws IOException {
+        return GsonUtil.get(
+                Dependencies.class,
+                readFileFromJar(jarPath, "installer-data/dependencies.json")
+        );
+    }
 
     public static String readFileFromJar(Path jarPath, String entryPath) throws IOException {
+        StartupProfiler.jarOpened();
         try (JarFile jar = new JarFile(jarPath.toFile())) {
             JarEntry entry = jar.getJarEntry(entryPath);
 
@@ -1,110 +1,346 @@
 package org.mangorage.mangobotlaunch.util.handler;
 
 import org.mangorage.bootstrap.api.dependency.ModuleNameOrigin;
+import org.mangorage.mangobotlaunch.launch.StartupProfiler;
 import org.mangorage.mangobotlaunch.util.Result;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.UncheckedIOException;
-import java.lang.module.ModuleFinder;
+import java.lang.module.ModuleDescriptor;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
-import java.util.jar.JarFile;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.jar.Attributes;
 import java.util.jar.Manifest;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 public final class JarHandler {
+    private static final String MODULE_INFO = "module-info.class";
+    private static final String MANIFEST = "META-INF/MANIFEST.MF";
+    private static final String VERSIONS_PREFIX = "META-INF/versions/";
+    private static final String SERVICES_PREFIX = "META-INF/services/";
+    private static final int RUNTIME_VERSION = Runtime.version().feature();
+    private static final Pattern DASH_VERSION = Pattern.compile("-(\\d+(\\.|$))");
+
+    /**
+     * Everything {@link #resolveModuleName(Path)} needs, read with a single open of the jar.
+     *
+     * @param moduleInfoName the name declared by the root module-info.class, null if there is none
+     * @param finderName     the name {@link java.lang.module.ModuleFinder} would give this jar, null if it would reject it
+     *                       or the manifest already decides the result
+     */
+    record JarMetadata(String moduleInfoName, boolean hasModuleInfo, boolean multiRelease, Manifest manifest, String finderName) {}
+
+    /**
+     * Packages found in one walk over the central directory.
+     *
+     * @param packages      packages of every entry, what an explicit module is checked against
+     * @param classPackages packages holding classes, what an automatic module is made of
+     * @param services      META-INF/services entries
+     * @param rootClasses   whether there are classes in the unnamed package, ModuleFinder rejects those jars
+     */
+    private record JarContents(Set<String> packages, Set<String> classPackages, List<ZipEntry> services, boolean rootClasses) {}
 
     public static Result resolveModuleName(Path jarPath) {
-        try (JarFile jarFile = new JarFile(jarPath.toFile())) {
+        final JarMetadata metadata;
+        try {
+            metadata = readMetadata(jarPath);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read JAR: " + jarPath, e);
+        }
 
-            String moduleName = null;
+        final String moduleName = metadata.finderName();
 
-            try {
-                moduleName = ModuleFinder.of(jarPath)
-                        .findAll()
-                        .iterator()
-                        .next()
-                        .descriptor()
-                        .name();
-            } catch (Exception ignore) {}
+        // 1. Proper JPMS module
+        if (metadata.hasModuleInfo()) {
+            final var name = moduleName != null ? moduleName : metadata.moduleInfoName();
+            if (name != null)
+                return new Result(name, ModuleNameOrigin.MODULE_INFO, jarPath);
+        } else if (metadata.multiRelease() && moduleName != null) {
+            return new Result(moduleName, ModuleNameOrigin.MULTI_RELEASE, jarPath);
+        }
+
+        // 2. Check MANIFEST.MF for Automatic-Module-Name
+        final Manifest manifest = metadata.manifest();
 
+        if (manifest != null) {
+            String autoName = manifest.getMainAttributes()
+                    .getValue("Automatic-Module-Name");
 
-            // 1. Proper JPMS module
-            if (jarFile.getEntry("module-info.class") != null) {
+            if (autoName != null && !autoName.isBlank()) {
                 return new Result(
-                        ModuleFinder.of(jarPath)
-                                .findAll()
-                                .iterator()
-                                .next()
-                                .descriptor()
-                                .name(),
-                        ModuleNameOrigin.MODULE_INFO,
+                        autoName,
+                        ModuleNameOrigin.MANIFEST,
                         jarPath
                 );
-            } else if (jarFile.isMultiRelease() && moduleName != null) {
-                return new Result(moduleName, ModuleNameOrigin.MULTI_RELEASE, jarPath);
             }
 
-            // 2. Check MANIFEST.MF for Automatic-Module-Name
-            Manifest manifest = jarFile.getManifest();
+            if (moduleName != null) {
+                return new Result(
+                        moduleName,
+                        ModuleNameOrigin.MODULE_FINDER,
+                        jarPath
+                );
+            }
+
+            String symbolicName = manifest.getMainAttributes()
+                    .getValue("Bundle-SymbolicName");
+
+            if (symbolicName != null) {
+                return new Result(
+                        symbolicName,
+                        ModuleNameOrigin.MANIFEST_BUNDLE_SYMBOLIC_NAME,
+                        jarPath
+                );
+            }
+
+        }
+
+        // 3. Fallback: filename heuristic (aka desperation mode)
+        String filename = jarPath.getFileName().toString();
+
+        String cleanedName = filename
+                .replaceAll("-[\\d\\.]+.*\\.jar$", "") // Remove version and extension
+                .replaceAll("\\.jar$", "")             // Remove extension if no version
+                .replace('-', '.');                    // Convert hyphens to dots
+
+        return new Result(
+                cleanedName,
+                ModuleNameOrigin.GUESSED,
+                jarPath
+        );
+    }
+
+    /**
+     * Opens the jar once and works out the same answers ModuleFinder.of(jarPath) and JarFile used to give.
+     * The central directory is only walked when a module name is plausible, since that is the only time packages matter.
+     */
+    static JarMetadata readMetadata(Path jarPath) throws IOException {
+        StartupProfiler.jarOpened();
+        try (ZipFile zipFile = new ZipFile(jarPath.toFile())) {
+            final ZipEntry manifestEntry = zipFile.getEntry(MANIFEST);
+            final Manifest manifest = manifestEntry == null ? null : readManifest(zipFile, manifestEntry);
+            final boolean multiRelease = manifest != null
+                    && "true".equalsIgnoreCase(manifest.getMainAttributes().getValue(Attributes.Name.MULTI_RELEASE));
+
+            final ZipEntry moduleInfoEntry = zipFile.getEntry(MODULE_INFO);
+            ZipEntry versionedModuleInfoEntry = null;
+            if (multiRelease) {
+                for (int version = RUNTIME_VERSION; version >= 9 && versionedModuleInfoEntry == null; version--) {
+                    versionedModuleInfoEntry = zipFile.getEntry(VERSIONS_PREFIX + version + "/" + MODULE_INFO);
+                }
+            }
+
+            final byte[] moduleInfo = moduleInfoEntry == null ? null : readBytes(zipFile, moduleInfoEntry);
+            final byte[] finderDescriptor = versionedModuleInfoEntry != null ? readBytes(zipFile, versionedModuleInfoEntry) : moduleInfo;
 
-            if (manifest != null) {
-                String autoName = manifest.getMainAttributes()
-                        .getValue("Automatic-Module-Name");
+            if (moduleInfo == null && !multiRelease) {
+                final String autoName = manifest == null ? null : manifest.getMainAttributes().getValue("Automatic-Module-Name");
+                if (manifest == null || (autoName != null && !autoName.isBlank())) {
+                    // Resolved by the manifest (or the lack of one) before ModuleFinder's answer is ever used
+                    return new JarMetadata(null, false, false, manifest, null);
+                }
+            }
 
-                if (autoName != null && !autoName.isBlank()) {
-                    return new Result(
-                            autoName,
-                            ModuleNameOrigin.MANIFEST,
-                            jarPath
-                    );
+            String automaticName = null;
+            if (finderDescriptor == null) {
+                automaticName = manifest == null ? null : manifest.getMainAttributes().getValue("Automatic-Module-Name");
+                if (automaticName == null) {
+                    automaticName = deriveAutomaticModuleName(jarPath.getFileName().toString());
                 }
 
-                try {
-                    final var found = ModuleFinder.of(jarPath).findAll();
-                    if (found != null) {
-                        final var foundModule = found.stream().findAny();
-                        if (foundModule.isPresent())
-                            System.out.println(foundModule.get());
-                        return new Result(
-                                foundModule.get().descriptor().name(),
-                                ModuleNameOrigin.MODULE_FINDER,
-                                jarPath
-                        );
-                    }
-                } catch (Exception ignore) {
-                    ignore.printStackTrace();
+                if (!isModuleName(automaticName)) {
+                    // ModuleFinder rejects it by name, no need to look at the entries
+                    return new JarMetadata(null, false, multiRelease, manifest, null);
                 }
+            }
+
+            final JarContents contents = readContents(zipFile, multiRelease);
+            final String moduleInfoName = moduleInfo == null ? null : readModuleName(moduleInfo, contents.packages());
+
+            String finderName = null;
+            if (!contents.rootClasses()) {
+                finderName = finderDescriptor == null
+                        ? automaticModuleName(zipFile, automaticName, contents)
+                        : finderDescriptor == moduleInfo ? moduleInfoName : readModuleName(finderDescriptor, contents.packages());
+            }
+
+            return new JarMetadata(moduleInfoName, moduleInfo != null, multiRelease, manifest, finderName);
+        }
+    }
+
+    private static JarContents readContents(ZipFile zipFile, boolean multiRelease) {
+        final Set<String> packages = new HashSet<>();
+        final Set<String> classPackages = new HashSet<>();
+        final List<ZipEntry> services = new ArrayList<>();
+        boolean rootClasses = false;
 
+        // Entries are usually grouped by directory, skip building the same package name over and over
+        String lastDirectory = "";
+        String lastPackage = null;
 
-                String symbolicName = manifest.getMainAttributes()
-                        .getValue("Bundle-SymbolicName");
+        final Enumeration<? extends ZipEntry> entries = zipFile.entries();
+        while (entries.hasMoreElements()) {
+            final ZipEntry entry = entries.nextElement();
+            if (entry.isDirectory()) continue;
 
-                if (symbolicName != null) {
-                    return new Result(
-                            symbolicName,
-                            ModuleNameOrigin.MANIFEST_BUNDLE_SYMBOLIC_NAME,
-                            jarPath
-                    );
+            final String name = entry.getName();
+            int start = 0;
+
+            if (name.startsWith("META-INF/")) {
+                if (multiRelease && name.startsWith(VERSIONS_PREFIX)) {
+                    final int end = name.indexOf('/', VERSIONS_PREFIX.length());
+                    final int version = end < 0 ? -1 : parseVersion(name.substring(VERSIONS_PREFIX.length(), end));
+                    if (version < 9 || version > RUNTIME_VERSION) continue;
+                    start = end + 1;
+                } else {
+                    // META-INF is never a legal package, only the service files matter here
+                    if (name.startsWith(SERVICES_PREFIX) && name.indexOf('/', SERVICES_PREFIX.length()) < 0) {
+                        services.add(entry);
+                    }
+                    continue;
                 }
+            }
 
+            final boolean isClass = name.endsWith(".class");
+            final int index = name.lastIndexOf('/');
+            if (index < start) {
+                if (isClass && !name.endsWith(MODULE_INFO)) rootClasses = true;
+                continue;
             }
 
-            // 3. Fallback: filename heuristic (aka desperation mode)
-            String filename = jarPath.getFileName().toString();
+            final int length = index - start;
+            if (lastPackage == null || length != lastDirectory.length() || !name.regionMatches(start, lastDirectory, 0, length)) {
+                lastDirectory = name.substring(start, index);
+                lastPackage = lastDirectory.replace('/', '.');
+            }
 
-            String cleanedName = filename
-                    .replaceAll("-[\\d\\.]+.*\\.jar$", "") // Remove version and extension
-                    .replaceAll("\\.jar$", "")             // Remove extension if no version
-                    .replace('-', '.');                    // Convert hyphens to dots
+            packages.add(lastPackage);
+            if (isClass) classPackages.add(lastPackage);
+        }
 
-            return new Result(
-                    cleanedName,
-                    ModuleNameOrigin.GUESSED,
-                    jarPath
-            );
+        return new JarContents(legalPackages(packages), legalPackages(classPackages), services, rootClasses);
+    }
 
-        } catch (IOException e) {
-            throw new UncheckedIOException("Failed to read JAR: " + jarPath, e);
+    // Same checks ModulePath.deriveModuleDescriptor makes for automatic modules
+    private static String automaticModuleName(ZipFile zipFile, String name, JarContents contents) {
+        try {
+            final var builder = ModuleDescriptor.newAutomaticModule(name).packages(contents.classPackages());
+
+            for (ZipEntry entry : contents.services()) {
+                // Like ModulePath.toServiceName, a file whose name is not a legal class name is no service at all
+                final var service = entry.getName().substring(SERVICES_PREFIX.length());
+                if (!isClassName(service)) continue;
+
+                final var providers = readProviders(zipFile, entry);
+                for (String provider : providers) {
+                    final int index = provider.lastIndexOf('.');
+                    if (index < 0 || !contents.classPackages().contains(provider.substring(0, index))) return null;
+                }
+                if (!providers.isEmpty()) builder.provides(service, providers);
+            }
+
+            return builder.build().name();
+        } catch (IllegalArgumentException | IOException e) {
+            return null;
         }
     }
 
+    private static String readModuleName(byte[] moduleInfo, Set<String> packages) {
+        try {
+            return ModuleDescriptor.read(ByteBuffer.wrap(moduleInfo), () -> packages).name();
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    // Same steps as the JDK's ModulePath.deriveModuleDescriptor
+    private static String deriveAutomaticModuleName(String filename) {
+        String name = filename.substring(0, filename.length() - 4);
+
+        final var matcher = DASH_VERSION.matcher(name);
+        if (matcher.find()) {
+            name = name.substring(0, matcher.start());
+        }
+
+        return name.replaceAll("[^A-Za-z0-9]", ".")
+                .replaceAll("(\\.)(\\1)+", ".")
+                .replaceAll("^\\.", "")
+                .replaceAll("\\.$", "");
+    }
+
+    private static boolean isModuleName(String name) {
+        try {
+            ModuleDescriptor.newAutomaticModule(name);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static Set<String> legalPackages(Set<String> packages) {
+        final Set<String> legal = new HashSet<>(packages.size());
+        final var validator = ModuleDescriptor.newAutomaticModule("validator");
+        for (String pn : packages) {
+            try {
+                validator.packages(Set.of(pn));
+                legal.add(pn);
+            } catch (IllegalArgumentException ignored) {}
+        }
+        return legal;
+    }
+
+    // Class and package names are checked alike, dot separated Java identifiers that are not keywords
+    private static boolean isClassName(String name) {
+        try {
+            ModuleDescriptor.newAutomaticModule("validator").packages(Set.of(name));
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static List<String> readProviders(ZipFile zipFile, ZipEntry entry) throws IOException {
+        final List<String> providers = new ArrayList<>();
+        try (var reader = new BufferedReader(new InputStreamReader(zipFile.getInputStream(entry), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final int comment = line.indexOf('#');
+                if (comment >= 0) line = line.substring(0, comment);
+                line = line.trim();
+                if (!line.isEmpty()) providers.add(line);
+            }
+        }
+        return providers;
+    }
+
+    private static int parseVersion(String version) {
+        try {
+            return Integer.parseInt(version);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static Manifest readManifest(ZipFile zipFile, ZipEntry entry) throws IOException {
+        try (InputStream in = zipFile.getInputStream(entry)) {
+            return new Manifest(in);
+        }
+    }
+
+    private static byte[] readBytes(ZipFile zipFile, ZipEntry entry) throws IOException {
+        try (InputStream in = zipFile.getInputStream(entry)) {
+            return in.readAllBytes();
+        }
+    }
 }
@@ -0,0 +1,189 @@
+package org.mangorage.mangobotlaunch.util.handler;
+
+import org.mangorage.bootstrap.api.dependency.ModuleNameOrigin;
+import org.mangorage.bootstrap.api.logging.IDeferredMangoLogger;
+import org.mangorage.bootstrap.api.logging.ILoggerFactory;
+import org.mangorage.mangobotlaunch.util.Result;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Remembers what {@link JarHandler#resolveModuleName(Path)} returned for a jar between boots.
+ * Entries are keyed by absolute path and only reused while the jar's size and last modified time
+ * (and optionally its SHA-256) still match.
+ */
+public final class ModuleNameCache {
+    private static final IDeferredMangoLogger LOGGER = ILoggerFactory.getDefault().getWrappedProvider("slf4j", ModuleNameCache.class);
+
+    private static final boolean DISABLE_MODULE_NAME_CACHE = Boolean.getBoolean("DISABLE_MODULE_NAME_CACHE");
+    private static final boolean MODULE_NAME_CACHE_VERIFY_HASH = Boolean.getBoolean("MODULE_NAME_CACHE_VERIFY_HASH");
+
+    private static final String FILE_NAME = "module-names.bin";
+    private static final int MAGIC = 0x4D4E4331; // MNC1
+    private static final int VERSION = 1;
+
+    record Entry(long size, long lastModified, String hash, String name, ModuleNameOrigin origin) {}
+
+    private final Path file;
+    private final boolean verifyHash;
+    private final Map<Path, Entry> stored;
+    private final Map<Path, Entry> used = new ConcurrentHashMap<>();
+    private volatile boolean modified = false;
+
+    private ModuleNameCache(Path file, boolean verifyHash, Map<Path, Entry> stored) {
+        this.file = file;
+        this.verifyHash = verifyHash;
+        this.stored = stored;
+    }
+
+    /**
+     * @return a cache backed by cacheDirectory, or one that always resolves when -DDISABLE_MODULE_NAME_CACHE=true
+     */
+    public static ModuleNameCache load(Path cacheDirectory) {
+        if (DISABLE_MODULE_NAME_CACHE) {
+            return new ModuleNameCache(null, false, Map.of());
+        }
+
+        final var file = cacheDirectory.resolve(FILE_NAME);
+        return new ModuleNameCache(file, MODULE_NAME_CACHE_VERIFY_HASH, read(file));
+    }
+
+    public Result resolve(Path jarPath) {
+        if (file == null) {
+            return JarHandler.resolveModuleName(jarPath);
+        }
+
+        final var key = jarPath.toAbsolutePath().normalize();
+        try {
+            final var attributes = Files.readAttributes(key, BasicFileAttributes.class);
+            final long size = attributes.size();
+            final long lastModified = attributes.lastModifiedTime().toMillis();
+            final String hash = verifyHash ? hash(key) : "";
+
+            final var cached = stored.get(key);
+            if (cached != null && cached.size() == size && cached.lastModified() == lastModified && cached.hash().equals(hash)) {
+                used.put(key, cached);
+                return new Result(cached.name(), cached.origin(), jarPath);
+            }
+
+            final var result = JarHandler.resolveModuleName(jarPath);
+            used.put(key, new Entry(size, lastModified, hash, result.name(), result.origin()));
+            modified = true;
+            return result;
+        } catch (IOException e) {
+            // Missing or unreadable jar, let the handler report it the usual way
+            return JarHandler.resolveModuleName(jarPath);
+        }
+    }
+
+    /**
+     * Writes every entry used since {@link #load(Path)}, jars that were not looked up are dropped.
+     */
+    public void save() {
+        if (file == null) return;
+        if (!modified && used.keySet().equals(stored.keySet())) return;
+
+        try {
+            Files.createDirectories(file.getParent());
+            final var temp = Files.createTempFile(file.getParent(), FILE_NAME, ".tmp");
+            try {
+                write(temp, used);
+                try {
+                    Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            LOGGER.get().info("Failed to write module name cache " + file + " cause -> " + e);
+        }
+    }
+
+    private static Map<Path, Entry> read(Path file) {
+        if (!Files.isRegularFile(file)) return Map.of();
+
+        final CRC32 crc = new CRC32();
+        try (var in = new DataInputStream(new CheckedInputStream(new BufferedInputStream(Files.newInputStream(file)), crc))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) return Map.of();
+
+            final int count = in.readInt();
+            final Map<Path, Entry> entries = new HashMap<>(count);
+            for (int i = 0; i < count; i++) {
+                final var path = Path.of(in.readUTF());
+                entries.put(path, new Entry(
+                        in.readLong(),
+                        in.readLong(),
+                        in.readUTF(),
+                        in.readUTF(),
+                        ModuleNameOrigin.valueOf(in.readUTF())
+                ));
+            }
+
+            final long expected = crc.getValue();
+            if (in.readLong() != expected) {
+                LOGGER.get().info("Ignoring corrupted module name cache " + file);
+                return Map.of();
+            }
+            return entries;
+        } catch (IOException | RuntimeException e) {
+            LOGGER.get().info("Ignoring unreadable module name cache " + file + " cause -> " + e);
+            return Map.of();
+        }
+    }
+
+    private static void write(Path file, Map<Path, Entry> entries) throws IOException {
+        final CRC32 crc = new CRC32();
+        try (var checked = new CheckedOutputStream(new BufferedOutputStream(Files.newOutputStream(file)), crc);
+             var out = new DataOutputStream(checked)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(entries.size());
+            for (var entry : entries.entrySet()) {
+                final var value = entry.getValue();
+                out.writeUTF(entry.getKey().toString());
+                out.writeLong(value.size());
+                out.writeLong(value.lastModified());
+                out.writeUTF(value.hash());
+                out.writeUTF(value.name());
+                out.writeUTF(value.origin().name());
+            }
+            out.flush();
+            out.writeLong(crc.getValue());
+        }
+    }
+
+    private static String hash(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            final var digest = MessageDigest.getInstance("SHA-256");
+            final byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}